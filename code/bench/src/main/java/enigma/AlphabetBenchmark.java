@@ -0,0 +1,79 @@
+package enigma;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of Alphabet.toInt over dense and sparse alphabets.
+ *  @author Krish Rambhiya
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AlphabetBenchmark {
+
+    /** Number of lookups in each invocation. */
+    static final int BATCH = 1024;
+
+    /** Kind of alphabet measured. */
+    @Param({ "upper", "ascii", "unicode" })
+    public String kind;
+
+    /** Alphabet measured. */
+    private Alphabet _alphabet;
+
+    /** Characters looked up. */
+    private char[] _chars;
+
+    /** Build the alphabet named by kind and the characters to look up. */
+    @Setup
+    public void setUp() {
+        StringBuilder chars = new StringBuilder();
+        switch (kind) {
+        case "upper":
+            chars.append("ABCDEFGHIJKLMNOPQRSTUVWXYZ");
+            break;
+        case "ascii":
+            for (char c = '!'; c <= '~'; c += 1) {
+                chars.append(c);
+            }
+            break;
+        default:
+            for (int i = 0; i < 96; i += 1) {
+                chars.append((char) (0x4e00 + i * 97));
+            }
+            break;
+        }
+        _alphabet = new Alphabet(chars.toString());
+        int[] indices = Corpus.indices(BATCH, chars.length());
+        _chars = new char[BATCH];
+        for (int i = 0; i < BATCH; i += 1) {
+            _chars[i] = chars.charAt(indices[i]);
+        }
+    }
+
+    /** Look up every character in _chars. */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int toInt() {
+        int sum = 0;
+        for (char c : _chars) {
+            sum += _alphabet.toInt(c);
+        }
+        return sum;
+    }
+}
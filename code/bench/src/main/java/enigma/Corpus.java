@@ -0,0 +1,136 @@
+package enigma;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+/** Generated configurations, machines and messages for the benchmarks.
+ *  Everything is derived from a fixed seed, so that results from
+ *  different runs measure the same work.
+ *  @author Krish Rambhiya
+ */
+class Corpus {
+
+    /** Seed for all generated text. */
+    static final long SEED = 61;
+
+    /** The naval configuration, as in testing/correct/default.conf. */
+    static final String CONFIG =
+        "ABCDEFGHIJKLMNOPQRSTUVWXYZ\n"
+        + " 5 3\n"
+        + " I MQ      (AELTPHQXRU) (BKNW) (CMOY) (DFG) (IV) (JZ) (S)\n"
+        + " II ME     (FIXVYOMW) (CDKLHUP) (ESZ) (BJ) (GR) (NT) (A) (Q)\n"
+        + " III MV    (ABDHPEJT) (CFLVMZOYQIRWUKXSG) (N)\n"
+        + " IV MJ     (AEPLIYWCOXMRFZBSTGJQNH) (DV) (KU)\n"
+        + " V MZ      (AVOLDRWFIUQ)(BZKSMNHYC) (EGTJPX)\n"
+        + " VI MZM    (AJQDVLEOZWIYTS) (CGMNHFUX) (BPRK)\n"
+        + " VII MZM   (ANOUPFRIMBZTLWKSVEGCJYDHXQ)\n"
+        + " VIII MZM  (AFLSETWUNDHOZVICQ) (BKJ) (GXY) (MPR)\n"
+        + " Beta N    (ALBEVFCYODJWUGNMQTZSKPR) (HIX)\n"
+        + " Gamma N   (AFNIRLBSQWVXGUZDKMTPCOYJHE)\n"
+        + " B R       (AE) (BN) (CK) (DQ) (FU) (GY) (HW) (IJ) (LO) (MP)\n"
+        + "           (RX) (SZ) (TV)\n"
+        + " C R       (AR) (BD) (CO) (EJ) (FN) (GT) (HK) (IV) (LM) (PW)\n"
+        + "           (QZ) (SX) (UY)\n";
+
+    /** Setting line used for every generated message. */
+    static final String SETTING = "* B Beta III IV I AXLE (HQ) (EX) (IP)";
+
+    /** Number of letters on each line of a generated input file. */
+    private static final int LINE_LENGTH = 60;
+
+    /** Return the upper-case alphabet. */
+    static Alphabet upper() {
+        return new Alphabet();
+    }
+
+    /** Return the naval rotor set over ALPHA, as described by CONFIG. */
+    static ArrayList<Rotor> navalRotors(Alphabet alpha) {
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        String[] lines = CONFIG.replace("\n           (", " (").split("\n");
+        for (int i = 2; i < lines.length; i += 1) {
+            String[] words = lines[i].trim().split("\\s+", 3);
+            Permutation perm = new Permutation(words[2], alpha);
+            switch (words[1].charAt(0)) {
+            case 'M':
+                rotors.add(new MovingRotor(words[0], perm,
+                                           words[1].substring(1)));
+                break;
+            case 'N':
+                rotors.add(new FixedRotor(words[0], perm));
+                break;
+            default:
+                rotors.add(new Reflector(words[0], perm));
+                break;
+            }
+        }
+        return rotors;
+    }
+
+    /** Return a naval machine set up as described by SETTING. */
+    static Machine machine() {
+        Alphabet alpha = upper();
+        Machine M = new Machine(alpha, 5, 3, navalRotors(alpha));
+        M.insertRotors(new String[] { "B", "Beta", "III", "IV", "I" });
+        M.setRotors("AXLE");
+        M.setPlugboard(new Permutation("(HQ) (EX) (IP)", alpha));
+        return M;
+    }
+
+    /** Return LENGTH random upper-case letters, with a blank after every
+     *  fifth. */
+    static String message(int length) {
+        Random random = new Random(SEED);
+        char[] result = new char[length];
+        for (int i = 0; i < length; i += 1) {
+            result[i] = i % 6 == 5 ? ' ' : (char) ('A' + random.nextInt(26));
+        }
+        return new String(result);
+    }
+
+    /** Return LENGTH random indices into an alphabet of SIZE
+     *  characters. */
+    static int[] indices(int length, int size) {
+        Random random = new Random(SEED);
+        int[] result = new int[length];
+        for (int i = 0; i < length; i += 1) {
+            result[i] = random.nextInt(size);
+        }
+        return result;
+    }
+
+    /** Return the contents of an input file of about BYTES bytes, in
+     *  ASCII, holding one setting line followed by lines of random
+     *  letters. */
+    static byte[] input(long bytes) {
+        Random random = new Random(SEED);
+        byte[] setting = (SETTING + "\n").getBytes(StandardCharsets.US_ASCII);
+        long lines = (bytes + LINE_LENGTH) / (LINE_LENGTH + 1);
+        byte[] result = Arrays.copyOf(setting, Math.toIntExact(
+            setting.length + lines * (LINE_LENGTH + 1)));
+        for (int k = setting.length; k < result.length; k += 1) {
+            if ((k - setting.length) % (LINE_LENGTH + 1) == LINE_LENGTH) {
+                result[k] = '\n';
+            } else {
+                result[k] = (byte) ('A' + random.nextInt(26));
+            }
+        }
+        return result;
+    }
+
+    /** Return the number of bytes denoted by SIZE, a number followed by
+     *  an optional KB, MB or GB suffix. */
+    static long bytes(String size) {
+        String digits = size.replaceAll("[KMG]B$", "");
+        long n = Long.parseLong(digits);
+        if (size.endsWith("KB")) {
+            return n << 10;
+        } else if (size.endsWith("MB")) {
+            return n << 20;
+        } else if (size.endsWith("GB")) {
+            return n << 30;
+        }
+        return n;
+    }
+}
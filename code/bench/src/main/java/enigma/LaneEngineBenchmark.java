@@ -0,0 +1,98 @@
+package enigma;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of trying many keys on one text, as a key search does:
+ *  one machine reset and run per key, against a LaneEngine running
+ *  every key at once, in keys per microsecond.
+ *  @author Krish Rambhiya
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1,
+      jvmArgsAppend = { "--add-modules", "jdk.incubator.vector" })
+public class LaneEngineBenchmark {
+
+    /** Number of keys tried per invocation. */
+    static final int KEYS = 64;
+
+    /** Length of the text. */
+    static final int LENGTH = 200;
+
+    /** Number of lanes of the engine. */
+    @Param({ "8", "64" })
+    public int lanes;
+
+    /** Whether the engine uses the vector API. */
+    @Param({ "false", "true" })
+    public boolean vectorize;
+
+    /** Machine for the one-at-a-time trials. */
+    private Machine _machine;
+
+    /** Engine for the lane trials. */
+    private LaneEngine _engine;
+
+    /** Starting positions of each key. */
+    private int[][] _settings;
+
+    /** Text converted. */
+    private int[] _text;
+
+    /** Output of the conversions. */
+    private int[] _out;
+
+    /** Build the machine, engine and inputs. */
+    @Setup
+    public void setUp() {
+        _machine = Corpus.machine();
+        _engine = new LaneEngine(_machine.definition(), lanes,
+                                 vectorize);
+        _text = Corpus.indices(LENGTH, 26);
+        _out = new int[Math.max(KEYS, lanes) * LENGTH];
+        _settings = new int[KEYS][];
+        for (int k = 0; k < KEYS; k += 1) {
+            _settings[k] = new int[] { 0, k / 26, k % 26, (k * 7) % 26 };
+        }
+    }
+
+    /** Try each key on a single machine. */
+    @Benchmark
+    @OperationsPerInvocation(KEYS)
+    public int machine() {
+        for (int[] setting : _settings) {
+            _machine.setRotors(setting);
+            _machine.convert(_text, 0, LENGTH, _out, 0);
+        }
+        return _out[0];
+    }
+
+    /** Try the keys lanes at a time. */
+    @Benchmark
+    @OperationsPerInvocation(KEYS)
+    public int engine() {
+        for (int k = 0; k < KEYS; k += lanes) {
+            for (int lane = 0; lane < lanes; lane += 1) {
+                _engine.setLane(lane, _settings[(k + lane) % KEYS]);
+            }
+            _engine.convert(_text, 0, LENGTH, _out);
+        }
+        return _out[0];
+    }
+}
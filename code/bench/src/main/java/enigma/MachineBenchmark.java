@@ -0,0 +1,71 @@
+package enigma;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of Machine.convert on single indices, in characters per
+ *  microsecond, and on whole messages of various lengths, in messages
+ *  per microsecond.
+ *  @author Krish Rambhiya
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = { "-Xmx4g" })
+public class MachineBenchmark {
+
+    /** Number of indices converted by convertInt. */
+    static final int BATCH = 1024;
+
+    /** Length of the message converted by convertString. */
+    @Param({ "1KB", "1MB", "64MB" })
+    public String size;
+
+    /** Machine measured. */
+    private Machine _machine;
+
+    /** Indices converted by convertInt. */
+    private int[] _indices;
+
+    /** Message converted by convertString. */
+    private String _message;
+
+    /** Build the machine and its inputs. */
+    @Setup
+    public void setUp() {
+        _machine = Corpus.machine();
+        _indices = Corpus.indices(BATCH, 26);
+        _message = Corpus.message((int) Corpus.bytes(size));
+    }
+
+    /** Convert BATCH single indices. */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int convertInt() {
+        int sum = 0;
+        for (int c : _indices) {
+            sum += _machine.convert(c);
+        }
+        return sum;
+    }
+
+    /** Convert the whole message. */
+    @Benchmark
+    public String convertString() {
+        return _machine.convert(_message);
+    }
+}
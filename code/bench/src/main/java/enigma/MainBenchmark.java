@@ -0,0 +1,68 @@
+package enigma;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmark of Main's conversion of generated input, held in memory,
+ *  from decoding the input to writing the grouped output, which is
+ *  discarded.  The machine and the Main are built once, so that neither
+ *  configuration nor file handling is measured.  Larger inputs, up to
+ *  1GB, may be selected with -p size=1GB.
+ *  @author Krish Rambhiya
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = { "-Xmx4g" })
+public class MainBenchmark {
+
+    /** Approximate size of the input. */
+    @Param({ "1KB", "1MB", "64MB" })
+    public String size;
+
+    /** Number of worker threads, as for --threads, or 0 to convert the
+     *  input as a single stream. */
+    @Param({ "0", "4" })
+    public int threads;
+
+    /** Machine to which the input is applied. */
+    private Machine _machine;
+
+    /** Main doing the conversion. */
+    private Main _main;
+
+    /** Contents of the input. */
+    private byte[] _input;
+
+    /** Build the machine, the Main and the input. */
+    @Setup
+    public void setUp() {
+        _machine = Corpus.machine();
+        _main = new Main(Channels.newChannel(OutputStream.nullOutputStream()),
+                         threads);
+        _input = Corpus.input(Corpus.bytes(size));
+    }
+
+    /** Convert the whole input. */
+    @Benchmark
+    public void convert() throws IOException {
+        _main.convert(_machine, new ByteArrayInputStream(_input));
+    }
+}
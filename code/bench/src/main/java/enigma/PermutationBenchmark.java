@@ -0,0 +1,84 @@
+package enigma;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of Permutation.permute and invert, and of
+ *  Rotor.convertForward.
+ *  @author Krish Rambhiya
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PermutationBenchmark {
+
+    /** Number of conversions in each invocation. */
+    static final int BATCH = 1024;
+
+    /** Permutation of naval rotor I. */
+    private Permutation _perm;
+
+    /** A moving rotor built on _perm. */
+    private Rotor _rotor;
+
+    /** Indices converted. */
+    private int[] _indices;
+
+    /** Build the permutation, the rotor and the inputs. */
+    @Setup
+    public void setUp() {
+        Alphabet alpha = Corpus.upper();
+        _perm = new Permutation(
+            "(AELTPHQXRU) (BKNW) (CMOY) (DFG) (IV) (JZ) (S)", alpha);
+        _rotor = new MovingRotor("I", _perm, "Q");
+        _indices = Corpus.indices(BATCH, alpha.size());
+    }
+
+    /** Permute every index. */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int permute() {
+        int sum = 0;
+        for (int p : _indices) {
+            sum += _perm.permute(p);
+        }
+        return sum;
+    }
+
+    /** Invert every index. */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int invert() {
+        int sum = 0;
+        for (int p : _indices) {
+            sum += _perm.invert(p);
+        }
+        return sum;
+    }
+
+    /** Convert every index through the rotor, advancing it after each. */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int rotorConvertForward() {
+        int sum = 0;
+        for (int p : _indices) {
+            sum += _rotor.convertForward(p);
+            _rotor.advance();
+        }
+        return sum;
+    }
+}
@@ -1,5 +1,7 @@
 package enigma;
-import java.util.LinkedHashSet;
+import java.util.Arrays;
+
+import static enigma.EnigmaException.*;
 
 /** An alphabet of encodable characters.  Provides a mapping from characters
  *  to and from indices into the alphabet.
@@ -7,27 +9,41 @@ import java.util.LinkedHashSet;
  */
 class Alphabet {
 
-    /** Char array. */
-    private String _characters;
-
-    /** Alphabet array. */
-    private char[] _alphabet;
-
     /** A new alphabet containing CHARS.  Character number #k has index
      *  K (numbering from 0). No character may be duplicated. */
     Alphabet(String chars) {
         _characters = chars;
-        LinkedHashSet<Character> newhashSet = new LinkedHashSet<>();
-        char[] buildNewAlph = new char[_characters.length()];
-        for (int i = 0; i < _characters.length(); i++) {
-            if (!newhashSet.add(_characters.charAt(i))) {
-                return;
+        _alphabet = chars.toCharArray();
+        char maxChar = 0;
+        for (char c : _alphabet) {
+            maxChar = (char) Math.max(maxChar, c);
+        }
+        if (maxChar < DENSE_LIMIT) {
+            _dense = new int[maxChar + 1];
+            Arrays.fill(_dense, -1);
+        } else {
+            int capacity = Integer.highestOneBit(
+                Math.max(1, _alphabet.length) * 2) * 2;
+            _hashKeys = new char[capacity];
+            _hashVals = new int[capacity];
+            Arrays.fill(_hashVals, -1);
+        }
+        for (int i = 0; i < _alphabet.length; i++) {
+            if (indexOf(_alphabet[i]) >= 0) {
+                throw error("duplicate character in alphabet: %c",
+                            _alphabet[i]);
+            }
+            if (_dense != null) {
+                _dense[_alphabet[i]] = i;
             } else {
-                char addtionalChar = _characters.charAt(i);
-                buildNewAlph[i] = addtionalChar;
+                int slot = _alphabet[i] & (_hashKeys.length - 1);
+                while (_hashVals[slot] >= 0) {
+                    slot = (slot + 1) & (_hashKeys.length - 1);
+                }
+                _hashKeys[slot] = _alphabet[i];
+                _hashVals[slot] = i;
             }
         }
-        _alphabet = buildNewAlph;
     }
 
     /** A default alphabet of all upper-case characters. */
@@ -42,12 +58,7 @@ class Alphabet {
 
     /** Returns true if CH is in this alphabet. */
     boolean contains(char ch) {
-        for (char charSearch : _alphabet) {
-            if (charSearch == ch) {
-                return true;
-            }
-        }
-        return false;
+        return indexOf(ch) >= 0;
     }
 
     /** Returns character number INDEX in the alphabet, where
@@ -62,11 +73,47 @@ class Alphabet {
     /** Returns the index of character CH which must be in
      *  the alphabet. This is the inverse of toChar(). */
     int toInt(char ch) {
-        for (int i = 0; i < size(); i++) {
-            if (_alphabet[i] == ch) {
-                return i;
+        int index = indexOf(ch);
+        if (index < 0) {
+            throw new EnigmaException("not present in alphabet");
+        }
+        return index;
+    }
+
+    /** Returns the index of CH, or -1 if CH is not in this alphabet.
+     *  Uses the dense table when one was built, and otherwise probes
+     *  the open-addressed hash table. */
+    private int indexOf(char ch) {
+        if (_dense != null) {
+            return ch < _dense.length ? _dense[ch] : -1;
+        }
+        int mask = _hashKeys.length - 1;
+        for (int slot = ch & mask; _hashVals[slot] >= 0;
+             slot = (slot + 1) & mask) {
+            if (_hashKeys[slot] == ch) {
+                return _hashVals[slot];
             }
         }
-        throw new EnigmaException("not present in alphabet");
+        return -1;
     }
+
+    /** Characters below this bound are indexed by a dense table; an
+     *  alphabet containing anything above it uses the hash table. */
+    private static final int DENSE_LIMIT = 0x800;
+
+    /** Char array. */
+    private String _characters;
+
+    /** Alphabet array. */
+    private char[] _alphabet;
+
+    /** Index of each character, by character value, or -1.  Null when
+     *  the alphabet is too sparse for a dense table. */
+    private int[] _dense;
+
+    /** Keys of the open-addressed hash table used for sparse alphabets. */
+    private char[] _hashKeys;
+
+    /** Indices matching _hashKeys, or -1 for an empty slot. */
+    private int[] _hashVals;
 }
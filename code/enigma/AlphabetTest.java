@@ -0,0 +1,67 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the Alphabet class.
+ *  @author
+ */
+public class AlphabetTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /** Check that ALPHA maps each character of CHARS to its position
+     *  and back. */
+    private void checkAlphabet(Alphabet alpha, String chars) {
+        assertEquals(chars.length(), alpha.size());
+        for (int i = 0; i < chars.length(); i += 1) {
+            char c = chars.charAt(i);
+            assertTrue(alpha.contains(c));
+            assertEquals(msg("toInt", "wrong index of '%c'", c),
+                         i, alpha.toInt(c));
+            assertEquals(c, alpha.toChar(i));
+        }
+    }
+
+    @Test
+    public void checkUpper() {
+        checkAlphabet(UPPER, UPPER_STRING);
+        assertFalse(UPPER.contains('a'));
+        assertFalse(UPPER.contains('\u4e00'));
+    }
+
+    @Test
+    public void checkSparseUnicode() {
+        String chars = "AZ\u03a9\u4e00\u4e01\uac00\uffef";
+        Alphabet alpha = new Alphabet(chars);
+        checkAlphabet(alpha, chars);
+        assertFalse(alpha.contains('B'));
+        assertFalse(alpha.contains('\u4e02'));
+    }
+
+    @Test
+    public void checkPrintableAscii() {
+        StringBuilder chars = new StringBuilder();
+        for (char c = '!'; c <= '~'; c += 1) {
+            chars.append(c);
+        }
+        checkAlphabet(new Alphabet(chars.toString()), chars.toString());
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testDuplicate() {
+        new Alphabet("ABCA");
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testNotInAlphabet() {
+        new Alphabet("\u4e00\u4e01").toInt('A');
+    }
+
+}
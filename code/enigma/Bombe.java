@@ -0,0 +1,302 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static enigma.EnigmaException.*;
+
+/** A crib-based search for the rotor order, starting positions and
+ *  plugboard connections of a machine, in the manner of the Turing-Welchman
+ *  Bombe.  A crib is plaintext known to encrypt to the ciphertext at a
+ *  given position of a message.  Its letter pairs form a menu: a graph
+ *  whose nodes are letters, with an edge between each plaintext letter and
+ *  its ciphertext letter labelled by its position in the crib.
+ *
+ *  If P is the plugboard and S_i the unplugged machine at crib position
+ *  #i, each edge (A, B, i) implies that P(B) = S_i(P(A)).  For each rotor
+ *  order and starting position, the Bombe assumes P(X) = Y for the most
+ *  connected letter X of the menu and each letter Y in turn, and follows
+ *  those implications (and the symmetry of the plugboard) around the
+ *  menu.  An assumption that leads to some letter being plugged to two
+ *  different letters is rejected at once.  A position that leaves some
+ *  assumption standing is a stop, reported with the plugboard pairs that
+ *  assumption implies.  The rotor orders are searched in parallel.
+ *  @author Krish Rambhiya
+ */
+class Bombe {
+
+    /** A Bombe searching the keys of MACHINE for those under which
+     *  CRIB encrypts to CIPHER, the ciphertext beginning at character
+     *  #OFFSET (numbering from 0) of the message. */
+    Bombe(Machine machine, String crib, String cipher, long offset) {
+        if (crib.length() != cipher.length() || crib.isEmpty()) {
+            throw error("crib and ciphertext must be non-empty and of the"
+                        + " same length");
+        }
+        if (offset < 0) {
+            throw error("negative crib offset");
+        }
+        _machine = machine;
+        _alphabet = machine.alphabet();
+        _offset = offset;
+        int size = _alphabet.size();
+        _length = crib.length();
+        _plain = new int[_length];
+        _cipher = new int[_length];
+        int[] degree = new int[size];
+        for (int i = 0; i < _length; i += 1) {
+            _plain[i] = _alphabet.toInt(crib.charAt(i));
+            _cipher[i] = _alphabet.toInt(cipher.charAt(i));
+            if (_plain[i] == _cipher[i]) {
+                throw error("crib letter %c at position %d cannot encrypt"
+                            + " to itself", crib.charAt(i), i);
+            }
+            degree[_plain[i]] += 1;
+            degree[_cipher[i]] += 1;
+        }
+        int test = 0;
+        for (int c = 1; c < size; c += 1) {
+            if (degree[c] > degree[test]) {
+                test = c;
+            }
+        }
+        _test = test;
+        _loops = countLoops(size);
+    }
+
+    /** A stop: a key consistent with the menu. */
+    static class Stop {
+
+        /** A stop at rotor order ROTORS and starting positions SETTING,
+         *  with plugboard pairs PLUGS implied by the menu. */
+        Stop(String[] rotors, String setting, String plugs) {
+            _rotors = rotors;
+            _setting = setting;
+            _plugs = plugs;
+        }
+
+        /** Return the rotor names, reflector first. */
+        String[] rotors() {
+            return _rotors.clone();
+        }
+
+        /** Return the starting positions, leftmost rotor first. */
+        String setting() {
+            return _setting;
+        }
+
+        /** Return the implied plugboard connections in cycle notation,
+         *  including only letters that are actually swapped. */
+        String plugs() {
+            return _plugs;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s %s %s", String.join(" ", _rotors),
+                                 _setting, _plugs);
+        }
+
+        /** Rotor names. */
+        private final String[] _rotors;
+
+        /** Starting positions. */
+        private final String _setting;
+
+        /** Implied plugboard pairs. */
+        private final String _plugs;
+    }
+
+    /** Return the number of independent loops in the menu.  A menu with
+     *  no loops cannot reject any position. */
+    int loops() {
+        return _loops;
+    }
+
+    /** Return the stops for every rotor order and starting position of
+     *  my machine, searching the rotor orders in parallel on the common
+     *  fork-join pool. */
+    List<Stop> run() {
+        return KeySearch.rotorOrders(_machine).parallelStream()
+            .flatMap(order -> search(order).stream())
+            .collect(Collectors.toList());
+    }
+
+    /** Return the stops for rotor order ROTORS at every starting
+     *  position. */
+    List<Stop> search(String[] rotors) {
+        Machine M = _machine.copy();
+        M.insertRotors(rotors);
+        M.setPlugboard(new Permutation("", _alphabet));
+        Scratch scratch = new Scratch(_alphabet.size(), _length);
+        int[] setting = new int[M.numRotors() - 1];
+        ArrayList<Stop> result = new ArrayList<>();
+        do {
+            M.setRotors(setting);
+            M.advanceBy(_offset);
+            for (int i = 0; i < _length; i += 1) {
+                M.advanceAndTabulate(scratch.scramblers[i]);
+            }
+            for (int y = 0; y < _alphabet.size(); y += 1) {
+                if (propagate(y, scratch)) {
+                    result.add(new Stop(rotors, setting(setting),
+                                        plugs(scratch)));
+                }
+            }
+        } while (nextSetting(setting, _alphabet.size()));
+        return result;
+    }
+
+    /** Working storage for one search. */
+    private static class Scratch {
+
+        /** Storage for an alphabet of SIZE characters and a crib of
+         *  LENGTH. */
+        Scratch(int size, int length) {
+            scramblers = new int[length][size];
+            plugged = new int[size];
+            queue = new int[2 * size * (2 * length + 1)];
+        }
+
+        /** The unplugged machine at each crib position. */
+        final int[][] scramblers;
+
+        /** Letter each letter is plugged to under the current assumption,
+         *  or -1. */
+        final int[] plugged;
+
+        /** Pending implications, as pairs of letters. */
+        final int[] queue;
+    }
+
+    /** Follow the implications of assuming that the test letter is
+     *  plugged to Y, recording them in SCRATCH.  Returns false as soon as
+     *  a contradiction is found. */
+    private boolean propagate(int y, Scratch scratch) {
+        int[] plugged = scratch.plugged, queue = scratch.queue;
+        Arrays.fill(plugged, -1);
+        int head = 0, tail = 0;
+        queue[tail++] = _test;
+        queue[tail++] = y;
+        while (head < tail) {
+            int a = queue[head++], u = queue[head++];
+            if (plugged[a] == u) {
+                continue;
+            }
+            if (plugged[a] >= 0 || (plugged[u] >= 0 && plugged[u] != a)) {
+                return false;
+            }
+            plugged[a] = u;
+            plugged[u] = a;
+            for (int i = 0; i < _length; i += 1) {
+                int[] s = scratch.scramblers[i];
+                if (_plain[i] == a || _plain[i] == u) {
+                    int other = _plain[i] == a ? u : a;
+                    tail = push(queue, tail, _cipher[i], s[other]);
+                }
+                if (_cipher[i] == a || _cipher[i] == u) {
+                    int other = _cipher[i] == a ? u : a;
+                    tail = push(queue, tail, _plain[i], s[other]);
+                }
+            }
+        }
+        return true;
+    }
+
+    /** Append the pair (A, B) to QUEUE at TAIL, returning the new tail. */
+    private static int push(int[] queue, int tail, int a, int b) {
+        queue[tail] = a;
+        queue[tail + 1] = b;
+        return tail + 2;
+    }
+
+    /** Return the swapped pairs recorded in SCRATCH in cycle notation. */
+    private String plugs(Scratch scratch) {
+        ArrayList<String> pairs = new ArrayList<>();
+        for (int a = 0; a < scratch.plugged.length; a += 1) {
+            int b = scratch.plugged[a];
+            if (b > a) {
+                pairs.add("(" + _alphabet.toChar(a) + _alphabet.toChar(b)
+                          + ")");
+            }
+        }
+        return String.join(" ", pairs);
+    }
+
+    /** Return SETTING as characters of my alphabet. */
+    private String setting(int[] setting) {
+        char[] result = new char[setting.length];
+        for (int i = 0; i < setting.length; i += 1) {
+            result[i] = _alphabet.toChar(setting[i]);
+        }
+        return new String(result);
+    }
+
+    /** Advance SETTING, as an odometer in base SIZE whose last element
+     *  moves fastest.  Returns false if SETTING was the last. */
+    private static boolean nextSetting(int[] setting, int size) {
+        for (int i = setting.length - 1; i >= 0; i -= 1) {
+            setting[i] += 1;
+            if (setting[i] < size) {
+                return true;
+            }
+            setting[i] = 0;
+        }
+        return false;
+    }
+
+    /** Return the number of independent loops of the menu over an
+     *  alphabet of SIZE letters: its edges less its letters plus its
+     *  connected components. */
+    private int countLoops(int size) {
+        int[] parent = new int[size];
+        for (int c = 0; c < size; c += 1) {
+            parent[c] = c;
+        }
+        int loops = 0;
+        for (int i = 0; i < _length; i += 1) {
+            int a = find(parent, _plain[i]), b = find(parent, _cipher[i]);
+            if (a == b) {
+                loops += 1;
+            } else {
+                parent[a] = b;
+            }
+        }
+        return loops;
+    }
+
+    /** Return the representative of C's component in the union-find
+     *  forest PARENT. */
+    private static int find(int[] parent, int c) {
+        while (parent[c] != c) {
+            parent[c] = parent[parent[c]];
+            c = parent[c];
+        }
+        return c;
+    }
+
+    /** Machine whose keys are searched. */
+    private final Machine _machine;
+
+    /** Alphabet of _machine. */
+    private final Alphabet _alphabet;
+
+    /** Position of the crib in the message. */
+    private final long _offset;
+
+    /** Length of the crib. */
+    private final int _length;
+
+    /** Crib and ciphertext letters, as indices. */
+    private final int[] _plain, _cipher;
+
+    /** Letter whose plugging is assumed: the most connected in the
+     *  menu. */
+    private final int _test;
+
+    /** Number of independent loops in the menu. */
+    private final int _loops;
+
+}
@@ -0,0 +1,59 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the Bombe class.
+ *  @author
+ */
+public class BombeTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testFindsKey() {
+        String plugs = "(AQ) (EP) (TW) (RZ)";
+        Machine M = MachineTest.smallMachine("Q", "E", "V");
+        M.insertRotors(new String[] { "B", "II", "I" });
+        M.setRotors("QD");
+        M.setPlugboard(new Permutation(plugs, UPPER));
+        String prefix = "XXXXXXXXXXXXXXXXXXXXXXXXXXXXXXX";
+        String crib = "WETTERVORHERSAGEBISKAYA";
+        String cipher = M.convert(prefix + crib).substring(prefix.length());
+
+        Bombe bombe = new Bombe(MachineTest.smallMachine("Q", "E", "V"),
+                                crib, cipher, prefix.length());
+        assertTrue(bombe.loops() > 0);
+        List<Bombe.Stop> stops = bombe.run();
+        boolean found = false;
+        for (Bombe.Stop stop : stops) {
+            if (Arrays.equals(new String[] { "B", "II", "I" }, stop.rotors())
+                && stop.setting().equals("QD")) {
+                found = true;
+                for (String pair : stop.plugs().split(" ")) {
+                    assertTrue(pair, plugs.contains(pair)
+                               || pair.charAt(1) == pair.charAt(2));
+                }
+            }
+        }
+        assertTrue(found);
+        assertTrue(stops.size() < 6 * 26 * 26 / 10);
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testSelfEncryption() {
+        new Bombe(MachineTest.smallMachine("Q", "E", "V"), "ABC", "XBZ", 0);
+    }
+
+}
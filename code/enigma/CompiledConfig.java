@@ -0,0 +1,211 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/** A machine configuration compiled into a binary file, so that later
+ *  runs can map the file into memory and build the machine from its
+ *  tables without parsing the configuration text or any cycle notation.
+ *  Each file records a fingerprint of the text it was compiled from;
+ *  a file whose fingerprint differs from that of the current text is
+ *  stale and is simply rebuilt.
+ *
+ *  The file, in little-endian byte order, holds
+ *      the four bytes "ENCF", the format version (int), the fingerprint
+ *      (long), the number of rotor slots (int), the number of pawls
+ *      (int), the alphabet size S (int), the alphabet's characters
+ *      (UTF-16 units), and the number of rotors (int), followed by each
+ *      rotor as its kind (one byte: 'M', 'N' or 'R'), the length of its
+ *      name (int), its name (UTF-16 units), a notch flag for each of
+ *      the S positions (bytes, 1 at a notch), and its permutation as
+ *      the image of each of the S indices (ints).
+ *  @author Krish Rambhiya
+ */
+class CompiledConfig {
+
+    /** Not instantiable. */
+    private CompiledConfig() {
+    }
+
+    /** Return the fingerprint of the configuration text SOURCE: its
+     *  length and its CRC-32C checksum. */
+    static long fingerprint(byte[] source) {
+        CRC32C crc = new CRC32C();
+        crc.update(source);
+        return ((long) source.length << 32) | crc.getValue();
+    }
+
+    /** Write MACHINE's alphabet, rotor count, pawls and available
+     *  rotors to FILE, recording FINGERPRINT as that of the text they
+     *  were read from.  The file is written under a temporary name and
+     *  then moved into place, so concurrent readers see either the old
+     *  file or the new one. */
+    static void save(Machine machine, long fingerprint, Path file)
+        throws IOException {
+        Alphabet alphabet = machine.alphabet();
+        int size = alphabet.size();
+        List<Rotor> rotors = machine.allRotors();
+        long length = FIXED_HEADER + 2L * size + 4;
+        for (Rotor rotor : rotors) {
+            length += 1 + 4 + 2L * rotor.name().length() + 5L * size;
+        }
+        if (length > Integer.MAX_VALUE) {
+            throw new EnigmaException("configuration too large to compile");
+        }
+        ByteBuffer data = ByteBuffer.allocate((int) length)
+            .order(ByteOrder.LITTLE_ENDIAN);
+        data.put(MAGIC).putInt(VERSION).putLong(fingerprint)
+            .putInt(machine.numRotors()).putInt(machine.numPawls())
+            .putInt(size);
+        for (int i = 0; i < size; i += 1) {
+            data.putChar(alphabet.toChar(i));
+        }
+        data.putInt(rotors.size());
+        for (Rotor rotor : rotors) {
+            data.put((byte) kind(rotor)).putInt(rotor.name().length());
+            for (int i = 0; i < rotor.name().length(); i += 1) {
+                data.putChar(rotor.name().charAt(i));
+            }
+            for (int p = 0; p < size; p += 1) {
+                data.put((byte) (rotor.notchAt(p) ? 1 : 0));
+            }
+            Permutation perm = rotor.permutation();
+            for (int p = 0; p < size; p += 1) {
+                data.putInt(perm.permute(p));
+            }
+        }
+        data.flip();
+        Path dir = file.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(dir, file.getFileName().toString(),
+                                         ".tmp");
+        try {
+            try (FileChannel out = FileChannel.open(temp,
+                                                    StandardOpenOption.WRITE)) {
+                while (data.hasRemaining()) {
+                    out.write(data);
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /** Return the machine compiled into FILE, mapped into memory
+     *  read-only, or null if there is no such file, or if it was compiled
+     *  from text whose fingerprint is not FINGERPRINT, or if it is not a
+     *  well-formed configuration file of the current version. */
+    static Machine load(Path file, long fingerprint) throws IOException {
+        MappedByteBuffer data;
+        try (FileChannel in = FileChannel.open(file,
+                                               StandardOpenOption.READ)) {
+            data = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+        } catch (NoSuchFileException excp) {
+            return null;
+        }
+        data.order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            byte[] magic = new byte[MAGIC.length];
+            data.get(magic);
+            if (!Arrays.equals(magic, MAGIC) || data.getInt() != VERSION
+                || data.getLong() != fingerprint) {
+                return null;
+            }
+            int numRotors = data.getInt(), pawls = data.getInt();
+            Alphabet alphabet = new Alphabet(readChars(data, data.getInt()));
+            int size = alphabet.size();
+            int count = data.getInt();
+            ArrayList<Rotor> rotors = new ArrayList<>();
+            for (int r = 0; r < count; r += 1) {
+                rotors.add(readRotor(data, alphabet));
+            }
+            if (data.hasRemaining()) {
+                return null;
+            }
+            return new Machine(alphabet, numRotors, pawls, rotors);
+        } catch (BufferUnderflowException | EnigmaException excp) {
+            return null;
+        }
+    }
+
+    /** Return the rotor over ALPHABET described at the position of
+     *  DATA, advancing past it. */
+    private static Rotor readRotor(ByteBuffer data, Alphabet alphabet) {
+        int size = alphabet.size();
+        char kind = (char) data.get();
+        String name = readChars(data, data.getInt());
+        StringBuilder notches = new StringBuilder();
+        for (int p = 0; p < size; p += 1) {
+            if (data.get() != 0) {
+                notches.append(alphabet.toChar(p));
+            }
+        }
+        if (4L * size > data.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        int[] forward = new int[size];
+        data.asIntBuffer().get(forward);
+        data.position(data.position() + 4 * size);
+        Permutation perm = new Permutation(forward, alphabet);
+        switch (kind) {
+        case 'M':
+            return new MovingRotor(name, perm, notches.toString());
+        case 'N':
+            return new FixedRotor(name, perm);
+        case 'R':
+            return new Reflector(name, perm);
+        default:
+            throw new EnigmaException("Not in specified types.");
+        }
+    }
+
+    /** Return the LENGTH UTF-16 units at the position of DATA, advancing
+     *  past them.  LENGTH is checked against what remains of DATA before
+     *  anything is allocated, so that a corrupt length is rejected rather
+     *  than exhausting memory. */
+    private static String readChars(ByteBuffer data, int length) {
+        if (length < 0 || 2L * length > data.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        char[] chars = new char[length];
+        data.asCharBuffer().get(chars);
+        data.position(data.position() + 2 * length);
+        return new String(chars);
+    }
+
+    /** Return the kind of ROTOR, as in a configuration file. */
+    private static char kind(Rotor rotor) {
+        if (rotor.reflecting()) {
+            return 'R';
+        } else if (rotor.rotates()) {
+            return 'M';
+        } else {
+            return 'N';
+        }
+    }
+
+    /** First bytes of a compiled configuration file. */
+    private static final byte[] MAGIC = { 'E', 'N', 'C', 'F' };
+
+    /** Version of the compiled configuration format. */
+    private static final int VERSION = 1;
+
+    /** Length of the magic number, version, fingerprint, rotor count,
+     *  pawls and alphabet size. */
+    private static final int FIXED_HEADER = 28;
+
+}
@@ -0,0 +1,113 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/** The suite of all JUnit tests for the CompiledConfig class.
+ *  @author
+ */
+public class CompiledConfigTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /** Offset of the alphabet's length in a compiled configuration. */
+    private static final int ALPHABET_LENGTH = 24;
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        Machine M = MachineTest.navalMachine(MachineTest.ROTORS, "AAAA",
+                                             "(AQ) (EP)");
+        Path file = Files.createTempFile("config", ".bin");
+        try {
+            CompiledConfig.save(M, 42, file);
+            Machine loaded = CompiledConfig.load(file, 42);
+            assertNotNull(loaded);
+            assertEquals(M.numRotors(), loaded.numRotors());
+            assertEquals(M.numPawls(), loaded.numPawls());
+            assertEquals(M.allRotors().size(), loaded.allRotors().size());
+            loaded.insertRotors(MachineTest.ROTORS);
+            loaded.setRotors("AAAA");
+            loaded.setPlugboard(new Permutation("(AQ) (EP)",
+                                                loaded.alphabet()));
+            assertEquals("IHBDQ QMTQZ", loaded.convert("HELLO WORLD"));
+            for (Rotor rotor : M.allRotors()) {
+                Rotor other = null;
+                for (Rotor r : loaded.allRotors()) {
+                    if (r.name().equals(rotor.name())) {
+                        other = r;
+                    }
+                }
+                assertNotNull(other);
+                assertEquals(rotor.rotates(), other.rotates());
+                assertEquals(rotor.reflecting(), other.reflecting());
+                for (int p = 0; p < 26; p += 1) {
+                    assertEquals(rotor.notchAt(p), other.notchAt(p));
+                    assertEquals(rotor.permutation().permute(p),
+                                 other.permutation().permute(p));
+                }
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testStaleOrBad() throws IOException {
+        Machine M = MachineTest.navalMachine(MachineTest.ROTORS, "AAAA",
+                                             "");
+        Path file = Files.createTempFile("config", ".bin");
+        try {
+            CompiledConfig.save(M, 42, file);
+            assertNull(CompiledConfig.load(file, 43));
+            for (int length : new int[] { -1, Integer.MAX_VALUE }) {
+                CompiledConfig.save(M, 42, file);
+                byte[] bytes = Files.readAllBytes(file);
+                ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN)
+                    .putInt(ALPHABET_LENGTH, length);
+                Files.write(file, bytes);
+                assertNull(CompiledConfig.load(file, 42));
+            }
+            Files.write(file, "not a configuration".getBytes("UTF-8"));
+            assertNull(CompiledConfig.load(file, 42));
+        } finally {
+            Files.delete(file);
+        }
+        assertNull(CompiledConfig.load(file, 42));
+    }
+
+    @Test
+    public void testFingerprint() {
+        byte[] a = "A 5 3".getBytes(StandardCharsets.UTF_8);
+        byte[] b = "A 5 4".getBytes(StandardCharsets.UTF_8);
+        assertEquals(CompiledConfig.fingerprint(a),
+                     CompiledConfig.fingerprint(a.clone()));
+        assertNotEquals(CompiledConfig.fingerprint(a),
+                        CompiledConfig.fingerprint(b));
+    }
+
+    @Test
+    public void testPermutationTable() {
+        Alphabet alpha = new Alphabet("ABCD");
+        Permutation p = new Permutation(new int[] { 1, 2, 0, 3 }, alpha);
+        assertEquals('B', p.permute('A'));
+        assertEquals('C', p.invert('A'));
+        assertEquals('D', p.permute('D'));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testPermutationTableNotPermutation() {
+        new Permutation(new int[] { 1, 1, 0, 3 }, new Alphabet("ABCD"));
+    }
+
+}
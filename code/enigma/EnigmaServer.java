@@ -0,0 +1,504 @@
+package enigma;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Function;
+
+import static enigma.EnigmaException.*;
+
+/** A long-running server converting messages for clients on a local
+ *  socket, so that a conversion costs neither JVM startup nor parsing of
+ *  the configuration.  Configurations, identified by name, are either
+ *  added when the server starts, and kept, or loaded when a request
+ *  first names them, and kept until they are the least recently used of
+ *  too many; each worker thread keeps its own copy of each machine.
+ *
+ *  A client sends any number of requests on a connection and receives
+ *  one response per request, in order.  Each string below is sent as
+ *  its length in bytes (int) followed by its UTF-8 encoding, and all
+ *  numbers are big-endian.  A request string longer than the server's
+ *  limit closes the connection.  A request is one byte giving its kind,
+ *      'C': convert a message, given as three strings: the
+ *           configuration name, a setting line as in the input of
+ *           Main (starting with "*"), and the message, whose lines
+ *           are separated by newlines;
+ *      'S': report the server's latency statistics;
+ *  and a response is a status byte (0 for success, 1 for an error)
+ *  followed by the converted message (lines grouped and terminated as
+ *  in the output of Main), the statistics, or an error message.
+ *
+ *  Small conversion requests that arrive together are batched, and each
+ *  batch is converted as one task on the worker threads, so a stream of
+ *  short messages does not pay for a hand-off per message.  The latency
+ *  of every request, from the end of its arrival to the end of its
+ *  response, is recorded in a histogram.  At most MAX_PENDING batches
+ *  per connection await their responses; a client that sends without
+ *  reading its responses is not read from until it catches up.
+ *  @author Krish Rambhiya
+ */
+class EnigmaServer implements Closeable {
+
+    /** A server listening on ADDRESS (a loopback TCP address or a Unix
+     *  domain socket path), converting on THREADS worker threads, and
+     *  obtaining the machine for each configuration name from LOADER
+     *  the first time the name is used, with the default limits. */
+    EnigmaServer(SocketAddress address, int threads,
+                 Function<String, Machine> loader) throws IOException {
+        this(address, threads, loader, MAX_STRING, MAX_CONFIGS);
+    }
+
+    /** A server as for EnigmaServer(ADDRESS, THREADS, LOADER) that
+     *  accepts request strings of at most MAXSTRING bytes and keeps at
+     *  most MAXCONFIGS of the machines obtained from LOADER. */
+    EnigmaServer(SocketAddress address, int threads,
+                 Function<String, Machine> loader, int maxString,
+                 int maxConfigs) throws IOException {
+        if (threads <= 0) {
+            throw error("server needs at least one worker thread");
+        }
+        if (maxString <= 0 || maxConfigs <= 0) {
+            throw error("server limits must be positive");
+        }
+        _maxString = maxString;
+        _maxConfigs = maxConfigs;
+        _loaded = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Machine>
+                                                eldest) {
+                return size() > _maxConfigs;
+            }
+        };
+        if (address instanceof UnixDomainSocketAddress) {
+            Files.deleteIfExists(((UnixDomainSocketAddress) address)
+                                 .getPath());
+            _channel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        } else {
+            _channel = ServerSocketChannel.open();
+        }
+        _channel.bind(address);
+        _address = _channel.getLocalAddress();
+        _loader = loader;
+        _workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "enigma-worker");
+            t.setDaemon(true);
+            return t;
+        });
+        _connections = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "enigma-connection");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** Return the address I am listening on. */
+    SocketAddress address() {
+        return _address;
+    }
+
+    /** Make MACHINE the machine for configuration NAME, kept for as
+     *  long as I run. */
+    void addConfig(String name, Machine machine) {
+        _configs.put(name, machine);
+    }
+
+    /** Return the number of configurations loaded and still kept, not
+     *  counting those added by addConfig. */
+    int loadedConfigs() {
+        synchronized (_loaded) {
+            return _loaded.size();
+        }
+    }
+
+    /** Return the histogram of request latencies. */
+    LatencyHistogram latencies() {
+        return _latencies;
+    }
+
+    /** Accept and serve connections until I am closed. */
+    void serve() throws IOException {
+        try {
+            while (true) {
+                SocketChannel client = _channel.accept();
+                _connections.execute(() -> handle(client));
+            }
+        } catch (ClosedChannelException excp) {
+            /* Closed: stop accepting. */
+        }
+    }
+
+    /** Serve connections on a background thread until I am closed. */
+    void start() {
+        Thread t = new Thread(() -> {
+            try {
+                serve();
+            } catch (IOException excp) {
+                /* Stop serving. */
+            }
+        }, "enigma-accept");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    @Override
+    public void close() throws IOException {
+        _channel.close();
+        _connections.shutdownNow();
+        _workers.shutdownNow();
+        if (_address instanceof UnixDomainSocketAddress) {
+            Files.deleteIfExists(((UnixDomainSocketAddress) _address)
+                                 .getPath());
+        }
+    }
+
+    /** A conversion request. */
+    private static class Request {
+
+        /** A request to convert MESSAGE with configuration CONFIG set up
+         *  according to SETTINGS, which finished arriving at time START
+         *  (as given by System.nanoTime()). */
+        Request(String config, String settings, String message, long start) {
+            this.config = config;
+            this.settings = settings;
+            this.message = message;
+            this.start = start;
+        }
+
+        /** Configuration name, setting line and message. */
+        final String config, settings, message;
+
+        /** Time of arrival. */
+        final long start;
+    }
+
+    /** A response ready to be sent. */
+    private static class Response {
+
+        /** A response with status STATUS and contents TEXT to a request
+         *  that arrived at time START. */
+        Response(int status, String text, long start) {
+            this.status = status;
+            this.text = text;
+            this.start = start;
+        }
+
+        /** Status byte. */
+        final int status;
+
+        /** Contents. */
+        final String text;
+
+        /** Arrival time of the request. */
+        final long start;
+    }
+
+    /** Read requests from CLIENT, hand them to the workers in batches,
+     *  and send the responses in order from a second thread, which closes
+     *  CLIENT once the client has stopped sending and every response has
+     *  been sent.  Reading waits while MAX_PENDING batches await their
+     *  responses. */
+    private void handle(SocketChannel client) {
+        BlockingQueue<Future<List<Response>>> pending =
+            new LinkedBlockingQueue<>(MAX_PENDING);
+        Future<?> writer = _connections.submit(() -> respond(client,
+                                                             pending));
+        DataInputStream in = new DataInputStream(
+            new BufferedInputStream(Channels.newInputStream(unlocked(client)),
+                                    BUFFER_SIZE));
+        try {
+            ArrayList<Request> batch = new ArrayList<>();
+            int kind;
+            while ((kind = in.read()) >= 0) {
+                if (kind == 'C') {
+                    String config = readString(in, _maxString),
+                        settings = readString(in, _maxString),
+                        message = readString(in, _maxString);
+                    Request request = new Request(config, settings, message,
+                                                  System.nanoTime());
+                    if (message.length() > SMALL_REQUEST) {
+                        submit(List.of(request), pending);
+                    } else {
+                        batch.add(request);
+                    }
+                } else if (kind == 'S') {
+                    submit(batch, pending);
+                    batch = new ArrayList<>();
+                    pending.put(CompletableFuture.completedFuture(List.of(
+                        new Response(0, _latencies.summary(),
+                                     System.nanoTime()))));
+                } else {
+                    break;
+                }
+                if (batch.size() >= BATCH_SIZE
+                    || (!batch.isEmpty() && in.available() == 0)) {
+                    submit(batch, pending);
+                    batch = new ArrayList<>();
+                }
+            }
+            submit(batch, pending);
+        } catch (IOException excp) {
+            /* Malformed request or lost connection: stop reading. */
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            pending.put(END);
+            writer.get();
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException excp) {
+            /* The connection is closed below regardless. */
+        }
+    }
+
+    /** Add the conversion of BATCH, if it is not empty, as one task on
+     *  the workers to PENDING, waiting for room in PENDING. */
+    private void submit(List<Request> batch,
+                        BlockingQueue<Future<List<Response>>> pending)
+        throws InterruptedException {
+        if (!batch.isEmpty()) {
+            pending.put(_workers.submit(() -> convert(batch)));
+        }
+    }
+
+    /** Return the responses to BATCH, converted on this worker's own
+     *  copies of the machines for their configurations. */
+    private List<Response> convert(List<Request> batch) {
+        Map<Machine, Machine> machines = _machines.get();
+        ArrayList<Response> result = new ArrayList<>(batch.size());
+        for (Request request : batch) {
+            try {
+                Machine config = config(request.config);
+                Machine M = machines.get(config);
+                if (M == null) {
+                    M = config.copy();
+                    machines.put(config, M);
+                }
+                List<String> lines =
+                    Arrays.asList(request.message.split("\n", -1));
+                result.add(new Response(0, Main.convertSection(
+                    M, request.settings, lines), request.start));
+            } catch (EnigmaException excp) {
+                result.add(new Response(1, excp.getMessage(),
+                                        request.start));
+            }
+        }
+        return result;
+    }
+
+    /** Return the machine for configuration NAME, loading it if it was
+     *  neither added nor kept since it was last loaded. */
+    private Machine config(String name) {
+        Machine result = _configs.get(name);
+        if (result != null) {
+            return result;
+        }
+        synchronized (_loaded) {
+            result = _loaded.get(name);
+        }
+        if (result == null) {
+            result = _loader.apply(name);
+            synchronized (_loaded) {
+                Machine raced = _loaded.putIfAbsent(name, result);
+                if (raced != null) {
+                    result = raced;
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Send the responses in PENDING to CLIENT in order, until PENDING
+     *  yields END, then close CLIENT.  If CLIENT fails first, it is
+     *  closed and the rest of PENDING is discarded up to END, so that
+     *  the reader never waits for room in PENDING forever. */
+    private void respond(SocketChannel client,
+                         BlockingQueue<Future<List<Response>>> pending) {
+        boolean ended = false;
+        try (DataOutputStream out = new DataOutputStream(
+                 new BufferedOutputStream(
+                     Channels.newOutputStream(unlocked(client)),
+                     BUFFER_SIZE))) {
+            while (true) {
+                Future<List<Response>> next = pending.poll();
+                if (next == null) {
+                    out.flush();
+                    next = pending.take();
+                }
+                if (next == END) {
+                    ended = true;
+                    break;
+                }
+                for (Response response : next.get()) {
+                    out.writeByte(response.status);
+                    writeString(out, response.text);
+                    _latencies.record(System.nanoTime() - response.start);
+                }
+            }
+        } catch (IOException | ExecutionException excp) {
+            /* Lost connection or failed task: drop the connection. */
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        try {
+            while (!ended) {
+                ended = pending.take() == END;
+            }
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Return a channel reading from and writing to CLIENT.  Streams
+     *  over CLIENT itself would hold its blocking lock while reading,
+     *  so that no response could be sent while the next request was
+     *  awaited; CLIENT allows one read and one write at once. */
+    private static ByteChannel unlocked(SocketChannel client) {
+        return new ByteChannel() {
+            @Override
+            public int read(ByteBuffer dst) throws IOException {
+                return client.read(dst);
+            }
+
+            @Override
+            public int write(ByteBuffer src) throws IOException {
+                return client.write(src);
+            }
+
+            @Override
+            public boolean isOpen() {
+                return client.isOpen();
+            }
+
+            @Override
+            public void close() throws IOException {
+                client.close();
+            }
+        };
+    }
+
+    /** Return a string, as described above, read from IN. */
+    static String readString(DataInputStream in) throws IOException {
+        return readString(in, Integer.MAX_VALUE);
+    }
+
+    /** Return a string, as described above, of at most MAX bytes, read
+     *  from IN. */
+    static String readString(DataInputStream in, int max)
+        throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > max) {
+            throw new EOFException("bad string length");
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** Write S to OUT as described above. */
+    static void writeString(DataOutputStream out, String s)
+        throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /** Size of connection buffers. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** Longest message, in characters, that is batched with others. */
+    private static final int SMALL_REQUEST = 4096;
+
+    /** Most requests in one batch. */
+    private static final int BATCH_SIZE = 64;
+
+    /** Most batches awaiting their responses on one connection. */
+    private static final int MAX_PENDING = 16;
+
+    /** Marks the end of a connection's pending responses. */
+    private static final Future<List<Response>> END =
+        CompletableFuture.completedFuture(null);
+
+    /** Default longest string accepted in a request, in bytes. */
+    static final int MAX_STRING = 1 << 22;
+
+    /** Default most configurations loaded by name that are kept. */
+    static final int MAX_CONFIGS = 64;
+
+    /** Longest string accepted in a request, in bytes. */
+    private final int _maxString;
+
+    /** Most configurations kept in _loaded, and in each worker's
+     *  _machines besides those in _configs. */
+    private final int _maxConfigs;
+
+    /** Socket on which clients connect. */
+    private final ServerSocketChannel _channel;
+
+    /** Address of _channel. */
+    private final SocketAddress _address;
+
+    /** Source of machines for configurations not yet loaded. */
+    private final Function<String, Machine> _loader;
+
+    /** Machine for each configuration added, never itself used to
+     *  convert. */
+    private final ConcurrentHashMap<String, Machine> _configs =
+        new ConcurrentHashMap<>();
+
+    /** Machine for each configuration loaded and kept, least recently
+     *  used first, never itself used to convert.  Guarded by itself. */
+    private final LinkedHashMap<String, Machine> _loaded;
+
+    /** Each worker's own copy of each machine in _configs and _loaded,
+     *  keyed by that machine (compared by identity), least recently used
+     *  first.  A configuration evicted from _loaded and loaded again is
+     *  a new machine, so no copy of the old one is used again. */
+    private final ThreadLocal<Map<Machine, Machine>> _machines =
+        ThreadLocal.withInitial(() -> new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Machine, Machine>
+                                                eldest) {
+                return size() > _maxConfigs + _configs.size();
+            }
+        });
+
+    /** Threads converting requests. */
+    private final ExecutorService _workers;
+
+    /** Threads reading requests and writing responses. */
+    private final ExecutorService _connections;
+
+    /** Latency of each request served. */
+    private final LatencyHistogram _latencies = new LatencyHistogram();
+
+}
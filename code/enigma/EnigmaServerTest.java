@@ -0,0 +1,207 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/** The suite of all JUnit tests for the EnigmaServer and
+ *  LatencyHistogram classes.
+ *  @author
+ */
+public class EnigmaServerTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    /** Return a server on ADDRESS whose only configuration is "naval". */
+    private static EnigmaServer navalServer(SocketAddress address)
+        throws IOException {
+        EnigmaServer server = new EnigmaServer(address, 2, name -> {
+            throw new EnigmaException("no configuration " + name);
+        });
+        server.addConfig("naval", MachineTest.navalMachine(
+            MachineTest.ROTORS, "AAAA", ""));
+        server.start();
+        return server;
+    }
+
+    /** Send the conversion request (CONFIG, SETTINGS, MESSAGE) to OUT. */
+    private static void request(DataOutputStream out, String config,
+                                String settings, String message)
+        throws IOException {
+        out.writeByte('C');
+        EnigmaServer.writeString(out, config);
+        EnigmaServer.writeString(out, settings);
+        EnigmaServer.writeString(out, message);
+    }
+
+    /** Send requests to, and check the responses of, the server at
+     *  ADDRESS, whose protocol family is FAMILY. */
+    private static void exchange(SocketAddress address,
+                                 StandardProtocolFamily family)
+        throws IOException {
+        try (SocketChannel client = SocketChannel.open(family)) {
+            client.connect(address);
+            DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Channels.newOutputStream(client)));
+            DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Channels.newInputStream(client)));
+            String sep = System.lineSeparator();
+            for (int i = 0; i < 200; i += 1) {
+                request(out, "naval", "* B Beta I II III AAAA (AQ) (EP)",
+                        "HELLO WORLD\nHELLO");
+            }
+            request(out, "naval", "* B Beta I I III AAAA", "HELLO");
+            request(out, "army", "* B I II III AAA", "HELLO");
+            out.writeByte('S');
+            out.flush();
+            client.shutdownOutput();
+            for (int i = 0; i < 200; i += 1) {
+                assertEquals(0, in.readByte());
+                assertEquals("IHBDQ QMTQZ" + sep + "XGPYN" + sep,
+                             EnigmaServer.readString(in));
+            }
+            assertEquals(1, in.readByte());
+            assertEquals("Rotor cannot repeat", EnigmaServer.readString(in));
+            assertEquals(1, in.readByte());
+            assertEquals("no configuration army",
+                         EnigmaServer.readString(in));
+            assertEquals(0, in.readByte());
+            assertTrue(EnigmaServer.readString(in).startsWith("count="));
+            assertEquals(-1, in.read());
+        }
+    }
+
+    @Test
+    public void testLoopback() throws IOException {
+        try (EnigmaServer server = navalServer(new InetSocketAddress(
+                 InetAddress.getLoopbackAddress(), 0))) {
+            exchange(server.address(), StandardProtocolFamily.INET);
+            exchange(server.address(), StandardProtocolFamily.INET);
+            assertEquals(406, server.latencies().count());
+        }
+    }
+
+    @Test
+    public void testUnixSocket() throws IOException {
+        Path dir = Files.createTempDirectory("enigma");
+        Path socket = dir.resolve("socket");
+        try (EnigmaServer server =
+                 navalServer(UnixDomainSocketAddress.of(socket))) {
+            exchange(server.address(), StandardProtocolFamily.UNIX);
+        } finally {
+            Files.deleteIfExists(socket);
+            Files.delete(dir);
+        }
+    }
+
+    @Test
+    public void testLimits() throws IOException {
+        int[] loads = new int[1];
+        try (EnigmaServer server = new EnigmaServer(
+                 new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+                 1, name -> {
+                     loads[0] += 1;
+                     if (loads[0] == 4) {
+                         return new Machine(TestUtils.UPPER, 6, 3,
+                                            MachineTest.navalRotors());
+                     }
+                     return MachineTest.navalMachine(MachineTest.ROTORS,
+                                                     "AAAA", "");
+                 }, 64, 2)) {
+            server.start();
+            try (SocketChannel client =
+                     SocketChannel.open(server.address())) {
+                DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(
+                        Channels.newOutputStream(client)));
+                DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(
+                        Channels.newInputStream(client)));
+                String settings = "* B Beta I II III AAAA (AQ) (EP)";
+                String[] names = { "a", "b", "c", "a", "a", "b" };
+                int[] status = { 0, 0, 0, 1, 1, 0 };
+                for (int i = 0; i < names.length; i += 1) {
+                    request(out, names[i], settings, "HELLO");
+                    out.flush();
+                    assertEquals(status[i], in.readByte());
+                    String text = EnigmaServer.readString(in);
+                    if (status[i] == 0) {
+                        assertEquals("IHBDQ" + System.lineSeparator(), text);
+                    }
+                }
+                assertEquals(5, loads[0]);
+                assertEquals(2, server.loadedConfigs());
+                request(out, "a", settings, "HELLO".repeat(13));
+                out.flush();
+                assertEquals(-1, in.read());
+            }
+        }
+    }
+
+    @Test
+    public void testUnreadResponses() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream requests = new DataOutputStream(bytes);
+        request(requests, "naval", "* B Beta I II III AAAA",
+                "HELLOWORLD".repeat(500));
+        byte[] one = bytes.toByteArray();
+        long total = 20L << 20;
+        try (EnigmaServer server = navalServer(new InetSocketAddress(
+                 InetAddress.getLoopbackAddress(), 0));
+             SocketChannel client = SocketChannel.open(server.address())) {
+            client.configureBlocking(false);
+            ByteBuffer buffer = ByteBuffer.wrap(one);
+            long sent = 0, stalled = System.nanoTime();
+            while (sent < total
+                   && System.nanoTime() - stalled < 500_000_000L) {
+                if (!buffer.hasRemaining()) {
+                    buffer.rewind();
+                }
+                int n = client.write(buffer);
+                if (n > 0) {
+                    sent += n;
+                    stalled = System.nanoTime();
+                }
+            }
+            assertTrue("server kept reading " + sent + " bytes",
+                       sent < total);
+        }
+    }
+
+    @Test
+    public void testHistogram() {
+        LatencyHistogram h = new LatencyHistogram();
+        assertEquals(0, h.percentile(0.5));
+        for (long n = 1; n <= 1000; n += 1) {
+            h.record(n * 1000);
+        }
+        assertEquals(1000, h.count());
+        long p50 = h.percentile(0.5), p99 = h.percentile(0.99);
+        assertTrue(p50 >= 500000 && p50 <= 500000 * 1.13);
+        assertTrue(p99 >= 990000 && p99 <= 990000 * 1.13);
+        assertTrue(h.percentile(1.0) >= 1000000);
+        h.record(5);
+        assertTrue(h.percentile(0.0001) == 5);
+    }
+
+}
@@ -0,0 +1,148 @@
+package enigma;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/** The output stage of Main: writes converted letters in groups
+ *  separated by blanks, and line separators, into one reusable direct
+ *  buffer that is written to a channel when full.  If the output charset
+ *  encodes ASCII characters as themselves, as US-ASCII, ISO-8859-1 and
+ *  UTF-8 do, ASCII characters are stored as bytes without going through
+ *  an encoder; other characters are encoded as they come.
+ *  @author Krish Rambhiya
+ */
+class GroupedWriter implements Flushable, Closeable {
+
+    /** A writer to OUT encoding characters in CHARSET, putting GROUPSIZE
+     *  letters in each group. */
+    GroupedWriter(WritableByteChannel out, Charset charset, int groupSize) {
+        if (groupSize <= 0) {
+            throw new EnigmaException("group size must be positive");
+        }
+        _out = out;
+        _groupSize = groupSize;
+        _ascii = charset.equals(StandardCharsets.US_ASCII)
+            || charset.equals(StandardCharsets.ISO_8859_1)
+            || charset.equals(StandardCharsets.UTF_8);
+        _encoder = charset.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        _newline = charset.encode(System.lineSeparator());
+    }
+
+    /** Write the letter C, preceded by a blank if it starts a group other
+     *  than the first of its line. */
+    void letter(char c) throws IOException {
+        if (_group == _groupSize) {
+            put(' ');
+            _group = 0;
+        }
+        put(c);
+        _group += 1;
+    }
+
+    /** End the current line. */
+    void endLine() throws IOException {
+        if (_buffer.remaining() < _newline.remaining()) {
+            drain();
+        }
+        _buffer.put(_newline.duplicate());
+        _group = 0;
+    }
+
+    /** Write the characters of TEXT as they are, without grouping. */
+    void write(CharSequence text) throws IOException {
+        for (int i = 0; i < text.length(); i += 1) {
+            put(text.charAt(i));
+        }
+    }
+
+    /** Store C in the buffer. */
+    private void put(char c) throws IOException {
+        if (_ascii && c < ASCII_LIMIT) {
+            if (!_buffer.hasRemaining()) {
+                drain();
+            }
+            _buffer.put((byte) c);
+        } else {
+            encode(c);
+        }
+    }
+
+    /** Store the encoding of C in the buffer.  A high surrogate is held
+     *  by the encoder until the low surrogate that follows it. */
+    private void encode(char c) throws IOException {
+        if (_buffer.remaining() < MAX_ENCODED) {
+            drain();
+        }
+        _char.compact().put(c).flip();
+        _encoder.encode(_char, _buffer, false);
+    }
+
+    /** Write the contents of the buffer to the channel and empty it. */
+    private void drain() throws IOException {
+        _buffer.flip();
+        while (_buffer.hasRemaining()) {
+            _out.write(_buffer);
+        }
+        _buffer.clear();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        drain();
+    }
+
+    /** Flush and close the channel. */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            _out.close();
+        }
+    }
+
+    /** Size of the buffer. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** Characters below this are ASCII. */
+    private static final char ASCII_LIMIT = 0x80;
+
+    /** Room left in the buffer before encoding a character. */
+    private static final int MAX_ENCODED = 16;
+
+    /** Destination of the output. */
+    private final WritableByteChannel _out;
+
+    /** Letters per group. */
+    private final int _groupSize;
+
+    /** True iff ASCII characters are stored without encoding. */
+    private final boolean _ascii;
+
+    /** Encoder for other characters. */
+    private final CharsetEncoder _encoder;
+
+    /** Encoded line separator. */
+    private final ByteBuffer _newline;
+
+    /** Output awaiting writing. */
+    private final ByteBuffer _buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+    /** Character being encoded, after any high surrogate held over from
+     *  the last. */
+    private final CharBuffer _char = CharBuffer.allocate(2).flip();
+
+    /** Letters written so far in the current group. */
+    private int _group;
+
+}
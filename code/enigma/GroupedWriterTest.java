@@ -0,0 +1,90 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/** The suite of all JUnit tests for the GroupedWriter class.
+ *  @author
+ */
+public class GroupedWriterTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /** Return the bytes written in CHARSET for the letters of each of
+     *  LINES, in groups of five, decoded again. */
+    private static String written(Charset charset, String... lines)
+        throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        GroupedWriter out =
+            new GroupedWriter(Channels.newChannel(bytes), charset, 5);
+        for (String line : lines) {
+            for (int i = 0; i < line.length(); i += 1) {
+                out.letter(line.charAt(i));
+            }
+            out.endLine();
+        }
+        out.flush();
+        return new String(bytes.toByteArray(), charset);
+    }
+
+    @Test
+    public void testGroups() throws IOException {
+        String sep = System.lineSeparator();
+        assertEquals("HELLO WORLD" + sep + sep + "ABCDE F" + sep,
+                     written(StandardCharsets.UTF_8, "HELLOWORLD", "",
+                             "ABCDEF"));
+        assertEquals("ABC" + sep, written(StandardCharsets.US_ASCII,
+                                          "ABC"));
+    }
+
+    @Test
+    public void testEncoded() throws IOException {
+        String sep = System.lineSeparator();
+        assertEquals("\u00e9\u00e8AB\u20ac \u00e7" + sep,
+                     written(StandardCharsets.UTF_8,
+                             "\u00e9\u00e8AB\u20ac\u00e7"));
+        assertEquals("ABCDE FG" + sep,
+                     written(StandardCharsets.UTF_16BE, "ABCDEFG"));
+        assertEquals("\ud83d\ude00X" + sep,
+                     written(StandardCharsets.UTF_8, "\ud83d\ude00X"));
+    }
+
+    @Test
+    public void testLong() throws IOException {
+        StringBuilder line = new StringBuilder(),
+            expected = new StringBuilder();
+        for (int i = 0; i < 200000; i += 1) {
+            char c = (char) ('A' + i % 26);
+            if (i > 0 && i % 5 == 0) {
+                expected.append(' ');
+            }
+            line.append(c);
+            expected.append(c);
+        }
+        expected.append(System.lineSeparator());
+        assertEquals(expected.toString(),
+                     written(StandardCharsets.UTF_8, line.toString()));
+    }
+
+    @Test
+    public void testWrite() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        GroupedWriter out = new GroupedWriter(Channels.newChannel(bytes),
+                                              StandardCharsets.UTF_8, 5);
+        out.write("AB CD\n");
+        out.letter('X');
+        out.close();
+        assertEquals("AB CD\nX", bytes.toString("UTF-8"));
+    }
+
+}
@@ -0,0 +1,330 @@
+package enigma;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static enigma.EnigmaException.*;
+
+/** A ciphertext-only search for the rotor order and starting positions
+ *  of a machine.  Every rotor order that can be drawn from the machine's
+ *  available rotors (a reflector first, then non-moving rotors, then
+ *  numPawls() moving rotors) is tried at every starting position, and
+ *  each trial decryption is scored by its index of coincidence.  The
+ *  best few candidates are kept.  The work is divided into one task for
+ *  each rotor order and position of the leftmost rotor, and the tasks
+ *  are run on a work-stealing fork-join pool.
+ *  @author Krish Rambhiya
+ */
+class KeySearch {
+
+    /** A search of the keys of MACHINE, with plugboard PLUGBOARD, for
+     *  those that decrypt CIPHERTEXT (a sequence of alphabet indices)
+     *  best, keeping the KEEP best. */
+    KeySearch(Machine machine, Permutation plugboard, int[] ciphertext,
+              int keep) {
+        if (keep <= 0) {
+            throw error("must keep at least one candidate");
+        }
+        if (ciphertext.length < 2) {
+            throw error("ciphertext too short to score");
+        }
+        _machine = machine;
+        _plugboard = plugboard;
+        _ciphertext = ciphertext.clone();
+        _keep = keep;
+        _orders = compiledOrders(machine);
+        _firstPositions = machine.alphabet().size();
+        long total = _orders.size();
+        for (int i = 1; i < machine.numRotors(); i += 1) {
+            total *= machine.alphabet().size();
+        }
+        _total = total;
+    }
+
+    /** A candidate key and its score. */
+    static class Candidate {
+
+        /** A candidate with rotor order ROTORS, starting positions
+         *  SETTING and score SCORE. */
+        Candidate(String[] rotors, String setting, double score) {
+            _rotors = rotors;
+            _setting = setting;
+            _score = score;
+        }
+
+        /** Return the rotor names, reflector first. */
+        String[] rotors() {
+            return _rotors.clone();
+        }
+
+        /** Return the starting positions, leftmost rotor first. */
+        String setting() {
+            return _setting;
+        }
+
+        /** Return the index of coincidence of the decryption. */
+        double score() {
+            return _score;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s %s %.5f", String.join(" ", _rotors),
+                                 _setting, _score);
+        }
+
+        /** Rotor names. */
+        private final String[] _rotors;
+
+        /** Starting positions. */
+        private final String _setting;
+
+        /** Score. */
+        private final double _score;
+    }
+
+    /** Return the number of candidate keys in the search. */
+    long total() {
+        return _total;
+    }
+
+    /** Return the number of candidate keys tried so far. */
+    long tested() {
+        return _tested.get();
+    }
+
+    /** Run the search on POOL, reporting progress and throughput to
+     *  PROGRESS (if not null) every second.  Returns the best candidates
+     *  found, best first. */
+    List<Candidate> run(ForkJoinPool pool, PrintStream progress) {
+        ScheduledExecutorService reporter = null;
+        long start = System.nanoTime();
+        if (progress != null) {
+            reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "key-search-progress");
+                t.setDaemon(true);
+                return t;
+            });
+            reporter.scheduleAtFixedRate(() -> report(progress, start),
+                                         1, 1, TimeUnit.SECONDS);
+        }
+        try {
+            PriorityQueue<Candidate> best =
+                pool.invoke(new Search(0, _orders.size() * _firstPositions));
+            ArrayList<Candidate> result = new ArrayList<>(best);
+            result.sort(BEST_FIRST);
+            return result;
+        } finally {
+            if (reporter != null) {
+                reporter.shutdownNow();
+                report(progress, start);
+            }
+        }
+    }
+
+    /** Report the progress of the search begun at START (as given by
+     *  System.nanoTime()) on OUT. */
+    private void report(PrintStream out, long start) {
+        long tested = tested();
+        double seconds = Math.max(1e-9, (System.nanoTime() - start) / 1e9);
+        out.printf("tested %d of %d keys (%.1f%%), %.0f keys/s%n",
+                   tested, _total, 100.0 * tested / _total,
+                   tested / seconds);
+    }
+
+    /** A task trying the keys of tasks numbered LO to HI - 1, where task
+     *  #K tries the rotor order #K / _firstPositions with its leftmost
+     *  rotor in position K % _firstPositions. */
+    private class Search extends RecursiveTask<PriorityQueue<Candidate>> {
+
+        /** A task trying the keys of tasks LO to HI - 1. */
+        Search(int lo, int hi) {
+            _lo = lo;
+            _hi = hi;
+        }
+
+        @Override
+        protected PriorityQueue<Candidate> compute() {
+            if (_hi - _lo > 1) {
+                int mid = (_lo + _hi) >>> 1;
+                Search left = new Search(_lo, mid);
+                left.fork();
+                PriorityQueue<Candidate> result =
+                    new Search(mid, _hi).compute();
+                for (Candidate c : left.join()) {
+                    offer(result, c);
+                }
+                return result;
+            }
+            return searchOne(_orders.get(_lo / _firstPositions),
+                             _lo % _firstPositions);
+        }
+
+        /** Bounds of my tasks. */
+        private final int _lo, _hi;
+    }
+
+    /** Try every key with rotor order ORDER and its leftmost rotor in
+     *  position FIRST, returning the best.  The keys are tried LANES at
+     *  a time on a LaneEngine. */
+    private PriorityQueue<Candidate> searchOne(RotorRegistry.Order order,
+                                               int first) {
+        PriorityQueue<Candidate> best = new PriorityQueue<>(WORST_FIRST);
+        String[] rotors = order.names();
+        Machine M = _machine.copy();
+        M.insertRotors(order);
+        M.setPlugboard(_plugboard);
+        LaneEngine engine = new LaneEngine(M.definition(), LANES);
+        int size = M.alphabet().size(), len = _ciphertext.length;
+        int[] setting = new int[M.numRotors() - 1];
+        int[][] settings = new int[LANES][];
+        int[] plain = new int[LANES * len];
+        int[] counts = new int[size];
+        setting[0] = first;
+        long tested = 0;
+        boolean more = true;
+        while (more) {
+            int lanes = 0;
+            while (more && lanes < LANES) {
+                engine.setLane(lanes, setting);
+                settings[lanes] = setting.clone();
+                lanes += 1;
+                more = nextSetting(setting, size);
+            }
+            engine.convert(_ciphertext, 0, len, plain);
+            for (int lane = 0; lane < lanes; lane += 1) {
+                double score = coincidence(plain, lane * len, len, counts);
+                if (best.size() < _keep || score > best.peek().score()) {
+                    offer(best, new Candidate(rotors,
+                                              setting(M, settings[lane]),
+                                              score));
+                }
+            }
+            tested += lanes;
+        }
+        _tested.addAndGet(tested);
+        return best;
+    }
+
+    /** Add C to BEST, dropping the worst candidate if BEST then holds
+     *  more than _keep. */
+    private void offer(PriorityQueue<Candidate> best, Candidate c) {
+        best.add(c);
+        if (best.size() > _keep) {
+            best.poll();
+        }
+    }
+
+    /** Advance SETTING to the next setting with the same first position,
+     *  as an odometer in base SIZE whose last element moves fastest.
+     *  Returns false if SETTING was the last. */
+    private static boolean nextSetting(int[] setting, int size) {
+        for (int i = setting.length - 1; i > 0; i -= 1) {
+            setting[i] += 1;
+            if (setting[i] < size) {
+                return true;
+            }
+            setting[i] = 0;
+        }
+        return false;
+    }
+
+    /** Return SETTING as characters of M's alphabet. */
+    private static String setting(Machine M, int[] setting) {
+        char[] result = new char[setting.length];
+        for (int i = 0; i < setting.length; i += 1) {
+            result[i] = M.alphabet().toChar(setting[i]);
+        }
+        return new String(result);
+    }
+
+    /** Return the index of coincidence of TEXT, using COUNTS (one
+     *  element per alphabet character) as scratch space. */
+    static double coincidence(int[] text, int[] counts) {
+        return coincidence(text, 0, text.length, counts);
+    }
+
+    /** Return the index of coincidence of the LEN indices of TEXT
+     *  starting at OFF, using COUNTS as for coincidence(TEXT, COUNTS). */
+    static double coincidence(int[] text, int off, int len, int[] counts) {
+        Arrays.fill(counts, 0);
+        for (int i = off; i < off + len; i += 1) {
+            counts[text[i]] += 1;
+        }
+        long sum = 0;
+        for (int n : counts) {
+            sum += (long) n * (n - 1);
+        }
+        return (double) sum / ((long) len * (len - 1));
+    }
+
+    /** Return every rotor order that can be drawn from the rotors of
+     *  MACHINE: a reflector, then numRotors() - numPawls() - 1 distinct
+     *  non-moving rotors, then numPawls() distinct moving rotors. */
+    static List<String[]> rotorOrders(Machine machine) {
+        ArrayList<String[]> result = new ArrayList<>();
+        for (RotorRegistry.Order order : machine.rotorRegistry()
+                 .orders(machine.numRotors(), machine.numPawls())) {
+            result.add(order.names());
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    /** Return the orders of rotorOrders(MACHINE), compiled by the rotor
+     *  registry of MACHINE. */
+    private static List<RotorRegistry.Order> compiledOrders(Machine machine) {
+        ArrayList<RotorRegistry.Order> result = new ArrayList<>();
+        for (RotorRegistry.Order order : machine.rotorRegistry()
+                 .orders(machine.numRotors(), machine.numPawls())) {
+            result.add(order);
+        }
+        return result;
+    }
+
+    /** Number of keys tried together on a LaneEngine. */
+    private static final int LANES = 64;
+
+    /** Orders candidates from best to worst. */
+    private static final Comparator<Candidate> BEST_FIRST =
+        (a, b) -> Double.compare(b.score(), a.score());
+
+    /** Orders candidates from worst to best. */
+    private static final Comparator<Candidate> WORST_FIRST =
+        BEST_FIRST.reversed();
+
+    /** Machine whose keys are searched. */
+    private final Machine _machine;
+
+    /** Plugboard used for every trial. */
+    private final Permutation _plugboard;
+
+    /** Ciphertext, as alphabet indices. */
+    private final int[] _ciphertext;
+
+    /** Number of candidates kept. */
+    private final int _keep;
+
+    /** Every rotor order tried. */
+    private final List<RotorRegistry.Order> _orders;
+
+    /** Number of positions of the leftmost non-reflector rotor. */
+    private final int _firstPositions;
+
+    /** Number of keys in the search. */
+    private final long _total;
+
+    /** Number of keys tried so far. */
+    private final AtomicLong _tested = new AtomicLong();
+
+}
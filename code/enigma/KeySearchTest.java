@@ -0,0 +1,70 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the KeySearch class.
+ *  @author
+ */
+public class KeySearchTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testRotorOrders() {
+        List<String[]> orders =
+            KeySearch.rotorOrders(MachineTest.smallMachine("Q", "Q", "Q"));
+        assertEquals(6, orders.size());
+        for (String[] order : orders) {
+            assertEquals("B", order[0]);
+            assertNotEquals(order[1], order[2]);
+        }
+        Machine naval = new Machine(UPPER, 5, 3, MachineTest.navalRotors());
+        assertEquals(2 * 2 * 8 * 7 * 6,
+                     KeySearch.rotorOrders(naval).size());
+    }
+
+    @Test
+    public void testFindsKey() {
+        Machine M = MachineTest.smallMachine("Q", "Q", "Q");
+        Permutation plugboard = new Permutation("(AQ) (EP)", UPPER);
+        M.insertRotors(new String[] { "B", "III", "I" });
+        M.setRotors("KD");
+        M.setPlugboard(plugboard);
+        int[] text = new int[120];
+        M.convert(text, 0, text.length, text, 0);
+
+        KeySearch search = new KeySearch(
+            MachineTest.smallMachine("Q", "Q", "Q"), plugboard, text, 3);
+        List<KeySearch.Candidate> best =
+            search.run(new ForkJoinPool(2), null);
+        assertEquals(3, best.size());
+        assertArrayEquals(new String[] { "B", "III", "I" },
+                          best.get(0).rotors());
+        assertEquals("KD", best.get(0).setting());
+        assertEquals(1.0, best.get(0).score(), 1e-9);
+        assertTrue(best.get(1).score() <= best.get(0).score());
+        assertEquals(search.total(), search.tested());
+        assertEquals(6 * 26 * 26, search.total());
+    }
+
+    @Test
+    public void testCoincidence() {
+        assertEquals(1.0, KeySearch.coincidence(new int[] { 2, 2, 2 },
+                                                new int[3]), 1e-9);
+        assertEquals(0.0, KeySearch.coincidence(new int[] { 0, 1, 2 },
+                                                new int[3]), 1e-9);
+    }
+
+}
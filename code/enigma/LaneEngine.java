@@ -0,0 +1,192 @@
+package enigma;
+
+import static enigma.EnigmaException.*;
+
+/** Many independent machines with the same rotors and plugboard but
+ *  their own rotor positions, converting the same text together, as a
+ *  key search does when it tries every starting position of one rotor
+ *  order.  Each machine is a lane.  The positions are kept as a
+ *  structure of arrays, one run of lanes per rotor slot, and the rotor
+ *  conversions as one flat table indexed by slot, position and input,
+ *  so each step of the text is one pass over the lanes doing only
+ *  array reads and adds.  When the jdk.incubator.vector module is
+ *  present, the rotor conversions of whole vectors of lanes are done
+ *  with SIMD gathers over that layout by VectorLanes; otherwise, and
+ *  for lanes left over after the last full vector, by a scalar loop.
+ *  @author Krish Rambhiya
+ */
+class LaneEngine {
+
+    /** An engine of LANES machines as defined by DEF, all with every
+     *  rotor at position 0, using the vector API if it is present. */
+    LaneEngine(MachineDefinition def, int lanes) {
+        this(def, lanes, VECTOR_API);
+    }
+
+    /** An engine as above that uses the vector API iff VECTORIZE and the
+     *  API is present. */
+    LaneEngine(MachineDefinition def, int lanes, boolean vectorize) {
+        if (lanes <= 0) {
+            throw error("an engine needs at least one lane");
+        }
+        int n = def.numRotors(), size = def.alphabet().size();
+        if ((long) n * size * size > Integer.MAX_VALUE) {
+            throw error("alphabet too large for a lane engine");
+        }
+        _lanes = lanes;
+        _size = size;
+        _right = n - 1;
+        _positions = new int[n * lanes];
+        _stepping = def.stepping();
+        _forward = new int[n * size * size];
+        _backward = new int[n * size * size];
+        _plugboard = new int[size];
+        _unplug = new int[size];
+        for (int k = 0; k < n; k += 1) {
+            for (int p = 0; p < size; p += 1) {
+                for (int c = 0; c < size; c += 1) {
+                    int at = (k * size + p) * size + c;
+                    _forward[at] = def.forward(k, p, c);
+                    _backward[at] = def.backward(k, p, c);
+                }
+            }
+        }
+        for (int c = 0; c < size; c += 1) {
+            _plugboard[c] = def.plugboard().permute(c);
+            _unplug[c] = def.plugboard().invert(c);
+        }
+        if (vectorize && VECTOR_API) {
+            _vectors = new VectorLanes(lanes, size, _right, _positions,
+                                       _forward, _backward, _unplug);
+        } else {
+            _vectors = null;
+        }
+    }
+
+    /** Return true iff the vector API is present, so that engines may
+     *  use it. */
+    static boolean vectorApi() {
+        return VECTOR_API;
+    }
+
+    /** Return true iff I convert with the vector API. */
+    boolean vectorized() {
+        return _vectors != null;
+    }
+
+    /** Return the number of lanes. */
+    int lanes() {
+        return _lanes;
+    }
+
+    /** Set the rotors of lane LANE (not counting the reflector) to the
+     *  positions SETTING, leftmost rotor first, as for
+     *  Machine.setRotors. */
+    void setLane(int lane, int[] setting) {
+        if (setting.length != _right) {
+            throw error("Length is wrong for Rotor setting.");
+        }
+        for (int k = 1; k <= _right; k += 1) {
+            int posn = setting[k - 1];
+            if (posn < 0 || posn >= _size) {
+                throw error("rotor position out of range: %d", posn);
+            }
+            _positions[k * _lanes + lane] = posn;
+        }
+    }
+
+    /** Set lane LANE to STATE. */
+    void setLane(int lane, MachineState state) {
+        if (state.size() != _right + 1) {
+            throw error("state has the wrong number of rotors");
+        }
+        for (int k = 0; k <= _right; k += 1) {
+            _positions[k * _lanes + lane] = state.position(k);
+        }
+    }
+
+    /** Return the current state of lane LANE. */
+    MachineState lane(int lane) {
+        int[] positions = new int[_right + 1];
+        for (int k = 0; k <= _right; k += 1) {
+            positions[k] = _positions[k * _lanes + lane];
+        }
+        return new MachineState(positions);
+    }
+
+    /** Convert the LEN alphabet indices starting at IN[OFF] in every
+     *  lane, putting lane #L's conversion of IN[OFF + I] in
+     *  OUT[L * LEN + I], and advancing every lane once per index.
+     *  Allocates nothing. */
+    void convert(int[] in, int off, int len, int[] out) {
+        if (off < 0 || len < 0 || off > in.length - len
+            || out.length < (long) _lanes * len) {
+            throw error("bad slice of length %d", len);
+        }
+        for (int i = 0; i < len; i += 1) {
+            int c = in[off + i];
+            if (c < 0 || c >= _size) {
+                throw error("index out of range: %d", c);
+            }
+            int plugged = _plugboard[c];
+            for (int lane = 0; lane < _lanes; lane += 1) {
+                _stepping.step(_positions, lane, _lanes);
+            }
+            int scalar = 0;
+            if (_vectors != null) {
+                _vectors.convert(plugged, out, len, i);
+                scalar = _vectors.limit();
+            }
+            for (int lane = scalar; lane < _lanes; lane += 1) {
+                out[lane * len + i] = _unplug[scramble(lane, plugged)];
+            }
+        }
+    }
+
+    /** Return the conversion of C, already through the plugboard, by the
+     *  rotors of lane LANE at their current positions. */
+    private int scramble(int lane, int c) {
+        int size = _size;
+        for (int k = _right; k >= 0; k -= 1) {
+            c = _forward[(k * size + _positions[k * _lanes + lane]) * size
+                         + c];
+        }
+        for (int k = 1; k <= _right; k += 1) {
+            c = _backward[(k * size + _positions[k * _lanes + lane]) * size
+                          + c];
+        }
+        return c;
+    }
+
+    /** True iff the jdk.incubator.vector module is in the boot layer.
+     *  VectorLanes, which needs it, is loaded only if so. */
+    private static final boolean VECTOR_API =
+        ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    /** Number of lanes. */
+    private final int _lanes;
+
+    /** Size of the alphabet. */
+    private final int _size;
+
+    /** Index of the rightmost rotor slot. */
+    private final int _right;
+
+    /** Position of the rotor in slot K of lane L, at K * _lanes + L. */
+    private final int[] _positions;
+
+    /** Stepping of the rotors, applied to each lane's run of
+     *  positions. */
+    private final Stepping _stepping;
+
+    /** Conversion of C by the rotor in slot K at position P, forward and
+     *  backward, at (K * _size + P) * _size + C. */
+    private final int[] _forward, _backward;
+
+    /** Plugboard and its inverse. */
+    private final int[] _plugboard, _unplug;
+
+    /** Vector conversions of my lanes, or null if not used. */
+    private final VectorLanes _vectors;
+
+}
@@ -0,0 +1,105 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the LaneEngine class.
+ *  @author
+ */
+public class LaneEngineTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    @Test
+    public void testLanesMatchMachines() {
+        String[] settings = { "AAAA", "AADU", "ZZZZ", "QEVQ", "MDUV" };
+        Machine M = MachineTest.navalMachine(MachineTest.ROTORS, "AAAA",
+                                             "(AQ) (EP) (TZ)");
+        MachineDefinition def = M.definition();
+        LaneEngine engine = new LaneEngine(def, settings.length);
+        assertEquals(settings.length, engine.lanes());
+        int[] text = new int[2000];
+        for (int i = 0; i < text.length; i += 1) {
+            text[i] = (i * 7 + i / 13) % 26;
+        }
+        for (int lane = 0; lane < settings.length; lane += 1) {
+            engine.setLane(lane, def.newState(settings[lane]));
+        }
+        int[] out = new int[settings.length * text.length];
+        engine.convert(text, 0, text.length, out);
+        for (int lane = 0; lane < settings.length; lane += 1) {
+            MachineState state = def.newState(settings[lane]);
+            int[] expected = new int[text.length];
+            def.convert(state, text, 0, text.length, expected, 0);
+            for (int i = 0; i < text.length; i += 1) {
+                assertEquals(expected[i], out[lane * text.length + i]);
+            }
+            assertEquals(state, engine.lane(lane));
+        }
+    }
+
+    @Test
+    public void testVectorAndScalarPaths() {
+        Machine M = MachineTest.navalMachine(MachineTest.ROTORS, "AAAA",
+                                             "(AQ) (EP) (TZ)");
+        MachineDefinition def = M.definition();
+        int lanes = 37;
+        int[] text = new int[500];
+        for (int i = 0; i < text.length; i += 1) {
+            text[i] = (i * 11 + i / 7) % 26;
+        }
+        for (boolean vectorize : new boolean[] { false, true }) {
+            LaneEngine engine = new LaneEngine(def, lanes, vectorize);
+            assertEquals(vectorize && LaneEngine.vectorApi(),
+                         engine.vectorized());
+            MachineState[] states = new MachineState[lanes];
+            for (int lane = 0; lane < lanes; lane += 1) {
+                states[lane] = def.newState(new String(new char[] {
+                    'A', (char) ('A' + lane % 26), 'Q', (char) ('D' + lane % 5)
+                }));
+                engine.setLane(lane, states[lane]);
+            }
+            int[] out = new int[lanes * text.length];
+            engine.convert(text, 0, text.length, out);
+            for (int lane = 0; lane < lanes; lane += 1) {
+                int[] expected = new int[text.length];
+                def.convert(states[lane], text, 0, text.length, expected, 0);
+                for (int i = 0; i < text.length; i += 1) {
+                    assertEquals(expected[i], out[lane * text.length + i]);
+                }
+                assertEquals(states[lane], engine.lane(lane));
+            }
+        }
+    }
+
+    @Test
+    public void testSetLaneFromSetting() {
+        Machine M = MachineTest.navalMachine(MachineTest.ROTORS, "AAAA",
+                                             "(AQ) (EP)");
+        LaneEngine engine = new LaneEngine(M.definition(), 2);
+        engine.setLane(1, new int[] { 0, 0, 0, 0 });
+        String msg = "HELLOWORLD";
+        int[] text = new int[msg.length()];
+        for (int i = 0; i < text.length; i += 1) {
+            text[i] = msg.charAt(i) - 'A';
+        }
+        int[] out = new int[2 * text.length];
+        engine.convert(text, 0, text.length, out);
+        StringBuilder result = new StringBuilder();
+        for (int i = text.length; i < out.length; i += 1) {
+            result.append((char) ('A' + out[i]));
+        }
+        assertEquals("IHBDQQMTQZ", result.toString());
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testBadSetting() {
+        Machine M = MachineTest.navalMachine(MachineTest.ROTORS, "AAAA", "");
+        new LaneEngine(M.definition(), 1).setLane(0, new int[] { 0, 0 });
+    }
+
+}
@@ -0,0 +1,96 @@
+package enigma;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/** A histogram of durations, safe to record into from many threads at
+ *  once without locking.  Durations are counted in buckets whose widths
+ *  grow with their bounds: each power of two of nanoseconds is split
+ *  into SUB_BUCKETS equal parts, so a reported percentile is within
+ *  about 1/SUB_BUCKETS of the true value.  Recording allocates
+ *  nothing.
+ *  @author Krish Rambhiya
+ */
+class LatencyHistogram {
+
+    /** Record one duration of NANOS nanoseconds.  Negative durations
+     *  count as 0. */
+    void record(long nanos) {
+        _counts.incrementAndGet(bucket(Math.max(0, nanos)));
+    }
+
+    /** Return the number of durations recorded. */
+    long count() {
+        long n = 0;
+        for (int b = 0; b < _counts.length(); b += 1) {
+            n += _counts.get(b);
+        }
+        return n;
+    }
+
+    /** Return an upper bound, in nanoseconds, on the duration below
+     *  which the fraction P (0 < P <= 1) of the recorded durations
+     *  fall, or 0 if none have been recorded. */
+    long percentile(double p) {
+        long[] counts = new long[_counts.length()];
+        long total = 0;
+        for (int b = 0; b < counts.length; b += 1) {
+            counts[b] = _counts.get(b);
+            total += counts[b];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(p * total));
+        long seen = 0;
+        for (int b = 0; b < counts.length; b += 1) {
+            seen += counts[b];
+            if (seen >= rank) {
+                return upperBound(b);
+            }
+        }
+        return upperBound(counts.length - 1);
+    }
+
+    /** Return a one-line summary of the histogram, with durations in
+     *  microseconds. */
+    String summary() {
+        return String.format("count=%d p50=%.1fus p90=%.1fus p99=%.1fus"
+                             + " p999=%.1fus max=%.1fus", count(),
+                             percentile(0.5) / 1e3, percentile(0.9) / 1e3,
+                             percentile(0.99) / 1e3, percentile(0.999) / 1e3,
+                             percentile(1.0) / 1e3);
+    }
+
+    /** Return the bucket counting a duration of NANOS >= 0. */
+    private static int bucket(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return (int) nanos;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int fraction = (int) (nanos >>> (exponent - SUB_BITS))
+            & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + fraction;
+    }
+
+    /** Return the largest duration counted by bucket B. */
+    private static long upperBound(int b) {
+        if (b < SUB_BUCKETS) {
+            return b;
+        }
+        int exponent = b / SUB_BUCKETS + SUB_BITS - 1;
+        long fraction = b % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BITS);
+        return (1L << exponent) + (fraction + 1) * width - 1;
+    }
+
+    /** Log base 2 of the number of buckets per power of two. */
+    private static final int SUB_BITS = 3;
+
+    /** Number of buckets per power of two. */
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    /** Count of durations in each bucket. */
+    private final AtomicLongArray _counts =
+        new AtomicLongArray((64 - SUB_BITS + 1) * SUB_BUCKETS);
+
+}
@@ -1,11 +1,21 @@
 package enigma;
 
+import java.nio.CharBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.IntStream;
 
 import static enigma.EnigmaException.*;
 
-/** Class that represents a complete enigma machine.
+/** Class that represents a complete enigma machine.  The rotors in its
+ *  slots are described by a MachineDefinition and their positions are
+ *  kept in a MachineState, so that a machine converts with the same
+ *  code as a definition shared among threads; the machine adds the
+ *  choice of rotors, a plugboard that may be changed pair by pair, and
+ *  a cache of conversions by rotor position.
  *  @author Krish Rambhiya
  */
 class Machine {
@@ -27,7 +37,36 @@ class Machine {
         for (Rotor rotor: allRotors) {
             _allRotors.add(rotor);
         }
-        _myrotorVals = new Rotor[_numRotors];
+        _registry = new RotorRegistry(_allRotors);
+        _identity = new Permutation("", alpha);
+        _state = new MachineState(new int[_numRotors]);
+        _start = new int[_numRotors];
+        setPathCacheCapacity(Math.min(DEFAULT_PATH_CACHE,
+                                      PATH_CACHE_ENTRIES / alpha.size()));
+    }
+
+    /** A machine with the alphabet, rotors, rotor positions, plugboard
+     *  and path cache capacity of ORIGINAL, whose rotors move
+     *  independently of ORIGINAL's.  The rotor registry and definition,
+     *  which are never modified, are shared; the path cache starts
+     *  empty. */
+    private Machine(Machine original) {
+        _alphabet = original._alphabet;
+        _numRotors = original._numRotors;
+        _pawls = original._pawls;
+        _allRotors = original._allRotors;
+        _registry = original._registry;
+        _identity = original._identity;
+        _definition = original._definition;
+        _order = original._order;
+        _state = original._state.copy();
+        _start = original._start.clone();
+        _plugboardVar = original._plugboardVar;
+        if (original._plug != null) {
+            _plug = original._plug.clone();
+            _unplug = original._unplug.clone();
+        }
+        _pathCacheCapacity = original._pathCacheCapacity;
     }
 
     /** Return the number of rotor slots I have. */
@@ -35,25 +74,80 @@ class Machine {
         return _numRotors;
     }
 
+    /** Return the number of pawls (and so of moving rotors) I have. */
+    int numPawls() {
+        return _pawls;
+    }
+
+    /** Return my alphabet. */
+    Alphabet alphabet() {
+        return _alphabet;
+    }
+
+    /** Return the rotors available to me, which may not be modified. */
+    List<Rotor> allRotors() {
+        return Collections.unmodifiableList(_allRotors);
+    }
+
+    /** Return the registry of the rotors available to me, which my
+     *  copies share. */
+    RotorRegistry rotorRegistry() {
+        return _registry;
+    }
+
     /** Set my rotor slots to the rotors named ROTORS from my set of
      *  available rotors (ROTORS[0] names the reflector).
-     *  Initially, all rotors are set at their 0 setting. */
+     *  Initially, all rotors are set at their 0 setting.  Each slot gets
+     *  its own copy of the named rotor, so that machines sharing a rotor
+     *  set do not disturb each other's rotor positions.  The names are
+     *  looked up in my rotor registry. */
     void insertRotors(String[] rotors) {
         if (numRotors() != rotors.length) {
             throw new EnigmaException("not exact number of rotors.");
-        } else {
-            for (int j = 0; j < _allRotors.size(); j++) {
-                for (int k = 0; k < rotors.length; k++) {
-                    Rotor currentRotor = _allRotors.get(j);
-                    if (currentRotor.name().equals(rotors[k])) {
-                        _myrotorVals[k] = currentRotor;
-                    }
-                }
-            }
         }
-        if (!_myrotorVals[0].reflecting()) {
+        insertRotors(_registry.order(rotors));
+    }
+
+    /** Set my rotor slots to the rotors of ORDER, compiled by my rotor
+     *  registry, as insertRotors(ORDER.names()) would, but without
+     *  looking up any name or recompiling the stepping.  Inserting the
+     *  order already in place just returns the rotors to position 0,
+     *  keeping the path cache. */
+    void insertRotors(RotorRegistry.Order order) {
+        if (order.registry() != _registry) {
+            throw error("rotor order is not from this machine's registry");
+        }
+        if (order.size() != _numRotors) {
+            throw new EnigmaException("not exact number of rotors.");
+        }
+        if (!order.rotor(0).reflecting()) {
             throw new EnigmaException("error.");
         }
+        if (order != _order) {
+            Rotor[] rotors = new Rotor[_numRotors];
+            for (int k = 0; k < _numRotors; k += 1) {
+                rotors[k] = order.rotor(k);
+            }
+            _definition = new MachineDefinition(_alphabet, rotors,
+                                                order.stepping(),
+                                                _identity);
+            _order = order;
+            clearPathCache();
+        }
+        Arrays.fill(_state.positions(), 0);
+    }
+
+    /** Return the compiled stepping of the rotors now in my slots. */
+    Stepping stepping() {
+        return _definition == null ? null : _definition.stepping();
+    }
+
+    /** Return the period of my rotor positions from their current
+     *  values: the number of key presses after which they repeat, once
+     *  they have entered a cycle. */
+    long period() {
+        Stepping stepping = stepping();
+        return stepping.period(stepping.pack(_state.positions()));
     }
 
 
@@ -71,13 +165,235 @@ class Machine {
                 throw new
                         EnigmaException("character not contained in alphabet.");
             }
-            _myrotorVals[i].set(characSetting);
+            _state.positions()[i] = _alphabet.toInt(characSetting);
+            _start[i] = _state.positions()[i];
+        }
+    }
+
+    /** Set my rotors to the positions in SETTING, an array of
+     *  numRotors()-1 indices whose first element is the position of the
+     *  leftmost rotor (not counting the reflector), as for
+     *  setRotors(String). */
+    void setRotors(int[] setting) {
+        if (_numRotors - 1 != setting.length) {
+            throw new EnigmaException("Length is wrong for Rotor setting.");
+        }
+        for (int i = 1; i < _numRotors; i += 1) {
+            if (setting[i - 1] < 0 || setting[i - 1] >= _alphabet.size()) {
+                throw error("rotor position out of range: %d",
+                            setting[i - 1]);
+            }
+            _state.positions()[i] = setting[i - 1];
+            _start[i] = setting[i - 1];
+        }
+    }
+
+    /** Return my rotors to the positions last given to setRotors and
+     *  advance them as if N keys had been pressed, so that the next
+     *  character converted is character #N of a message begun there. */
+    void seek(long n) {
+        System.arraycopy(_start, 0, _state.positions(), 0, _numRotors);
+        advanceBy(n);
+    }
+
+    /** Advance my rotors as if N keys had been pressed, without
+     *  converting anything.  Runs of key presses that move only the
+     *  rightmost rotor are skipped in one step, so a whole revolution of
+     *  the rightmost rotor costs time proportional to the number of
+     *  rotors and the notches it passes.  The positions after successive
+     *  revolutions eventually cycle, and revolutions beyond the first
+     *  trip around that cycle are skipped, so at most the smaller of
+     *  N / alphabet size and the length of the tail plus the period of
+     *  that sequence of revolutions is stepped through: a few hundred
+     *  for three stepping rotors over 26 letters, but growing with
+     *  every further stepping rotor. */
+    void advanceBy(long n) {
+        if (n < 0) {
+            throw error("cannot advance by %d key presses", n);
+        }
+        if (_definition == null) {
+            throw error("no rotors inserted");
+        }
+        int size = _alphabet.size();
+        int[] pos = _state.positions();
+        revolve(pos, n / size);
+        press(pos, n % size);
+    }
+
+    /** Update the rotor positions POS to their values after COUNT full
+     *  revolutions of the rightmost rotor.  The positions after each
+     *  revolution form an eventually periodic sequence; Brent's cycle
+     *  finder locates its period, after which the rest of COUNT is
+     *  reduced modulo the period.  Takes at most the length of the
+     *  sequence's tail plus twice its period in revolutions, or COUNT
+     *  if that is fewer. */
+    private void revolve(int[] pos, long count) {
+        if (count == 0) {
+            return;
+        }
+        int size = _alphabet.size();
+        long power = 1, period = 1;
+        int[] tortoise = pos.clone();
+        press(pos, size);
+        long done = 1;
+        while (done < count && !Arrays.equals(tortoise, pos)) {
+            if (power == period) {
+                System.arraycopy(pos, 0, tortoise, 0, pos.length);
+                power *= 2;
+                period = 0;
+            }
+            press(pos, size);
+            period += 1;
+            done += 1;
+        }
+        for (long i = (count - done) % period; i > 0; i -= 1) {
+            press(pos, size);
+        }
+    }
+
+    /** Update the rotor positions POS to their values after COUNT key
+     *  presses, by the same rules as advanceRotors. */
+    private void press(int[] pos, long count) {
+        Stepping stepping = stepping();
+        int size = _alphabet.size();
+        int right = _numRotors - 1;
+        while (count > 0) {
+            if (!stepping.quiet(pos)) {
+                stepping.step(pos);
+                count -= 1;
+                continue;
+            }
+            long run = 1;
+            if (stepping.rotates(right - 1)) {
+                while (run < count && run < size
+                       && !stepping.triggers(right - 1,
+                              (int) ((pos[right] + run) % size))) {
+                    run += 1;
+                }
+            } else {
+                run = count;
+            }
+            pos[right] = (int) ((pos[right] + run) % size);
+            count -= run;
         }
     }
 
     /** Set the plugboard to PLUGBOARD. */
     void setPlugboard(Permutation plugboard) {
         _plugboardVar = plugboard;
+        if (_plug == null) {
+            _plug = new int[_alphabet.size()];
+            _unplug = new int[_alphabet.size()];
+        }
+        plugboard.copyInto(_plug);
+        Permutation.invert(_plug, _unplug);
+    }
+
+    /** Return my plugboard, including any changes made to its pairs
+     *  since it was last set. */
+    Permutation plugboard() {
+        if (_plugboardVar == null && _plug != null) {
+            _plugboardVar = new Permutation(_plug.clone(), _alphabet);
+        }
+        return _plugboardVar;
+    }
+
+    /** Return the index that the plugboard connects to index C, which is
+     *  C itself if C is not plugged. */
+    int plugPartner(int c) {
+        checkPlug(c);
+        return _plug[c];
+    }
+
+    /** Connect indices A and B on the plugboard, first removing any pairs
+     *  either is already in.  Connecting an index to itself just unplugs
+     *  it.  Takes constant time: only the plugboard tables are changed,
+     *  no cycles are parsed, and the path cache, which does not include
+     *  the plugboard, is kept. */
+    void plugPair(int a, int b) {
+        unplug(a);
+        unplug(b);
+        _plug[a] = _unplug[a] = b;
+        _plug[b] = _unplug[b] = a;
+        plugboardChanged();
+    }
+
+    /** Remove the pair containing index C from the plugboard, if any, in
+     *  constant time. */
+    void unplug(int c) {
+        int partner = plugPartner(c);
+        if (partner != c) {
+            if (_plug[partner] != c) {
+                throw error("plugboard index %d is not in a pair", c);
+            }
+            _plug[c] = _unplug[c] = c;
+            _plug[partner] = _unplug[partner] = partner;
+            plugboardChanged();
+        }
+    }
+
+    /** Swap the partners of indices A and B, both of which must be in
+     *  plugboard pairs: if A is connected to X and B to Y, connect A to Y
+     *  and B to X instead.  Takes constant time. */
+    void swapPlugPartners(int a, int b) {
+        int x = plugPartner(a), y = plugPartner(b);
+        if (x == a || y == b) {
+            throw error("swapped plugboard indices must both be plugged");
+        }
+        if (x != b) {
+            plugPair(a, y);
+            plugPair(b, x);
+        }
+    }
+
+    /** Raise an error unless the plugboard is set and C is an index in
+     *  my alphabet. */
+    private void checkPlug(int c) {
+        if (_plug == null) {
+            throw error("plugboard not set");
+        }
+        if (c < 0 || c >= _plug.length) {
+            throw error("plugboard index out of range: %d", c);
+        }
+    }
+
+    /** Note that the pairs of the plugboard have changed. */
+    private void plugboardChanged() {
+        _plugboardVar = null;
+    }
+
+    /** Cache the substitution of the rotors and reflector for at most
+     *  CAPACITY stepping states, or disable the cache if CAPACITY is 0.
+     *  The cache is also disabled when the rotor positions cannot be
+     *  packed into a long.  The cache is discarded, and a new one built
+     *  when a character is next converted. */
+    void setPathCacheCapacity(int capacity) {
+        if (capacity < 0) {
+            throw error("negative path cache capacity");
+        }
+        double states = Math.pow(_alphabet.size(), _numRotors - 1);
+        _pathCacheCapacity = states > Long.MAX_VALUE ? 0 : capacity;
+        _paths = null;
+    }
+
+    /** Return the number of key presses whose stepping state was found
+     *  in the path cache. */
+    long pathCacheHits() {
+        return _paths == null ? 0 : _paths.hits();
+    }
+
+    /** Return the number of key presses whose stepping state had to be
+     *  added to the path cache. */
+    long pathCacheMisses() {
+        return _paths == null ? 0 : _paths.misses();
+    }
+
+    /** Discard all cached paths, which depend on the rotors in use but
+     *  not on the plugboard. */
+    private void clearPathCache() {
+        if (_paths != null) {
+            _paths.clear();
+        }
     }
 
     /** Returns the result of converting the input character C (as an
@@ -87,51 +403,186 @@ class Machine {
         if (c > _alphabet.size() - 1 || c < 0) {
             throw new EnigmaException("error");
         }
-        boolean[] movementPoss = new boolean[_numRotors];
-        for (int k = 0; k < _myrotorVals.length; k++) {
-            if (k == _myrotorVals.length - 1) {
-                movementPoss[k] = true;
-            } else if (_myrotorVals[k].rotates()
-                    && _myrotorVals[k + 1].atNotch()) {
-                movementPoss[k] = true;
-            } else {
-                movementPoss[k] = false;
+        advanceRotors();
+        if (_paths == null) {
+            if (_pathCacheCapacity == 0) {
+                return translate(c);
             }
+            _paths = new PathCache(_pathCacheCapacity, _alphabet.size());
+        }
+        int[] path =
+            _paths.lookup(_definition.stepping().pack(_state.positions()));
+        int p = _plug[c];
+        if (path[p] < 0) {
+            path[p] = _definition.scramble(_state.positions(), p);
         }
+        return _unplug[path[p]];
+    }
 
-        for (int k = 0; k < _myrotorVals.length; k += 1) {
-            if (movementPoss[k]) {
-                _myrotorVals[k].advance();
-                if (k < _myrotorVals.length - 1) {
-                    _myrotorVals[k + 1].advance();
-                    k += 1;
-                }
+    /** Advance the rotors by one key press, moving the rightmost rotor
+     *  and any rotor whose right neighbor is at a notch (which then moves
+     *  too), as in Stepping.step. */
+    private void advanceRotors() {
+        _state.step(_definition.stepping());
+    }
+
+    /** Return the image of C through the plugboard, the rotors, the
+     *  reflector and back, without moving any rotor. */
+    private int translate(int c) {
+        return _unplug[_definition.scramble(_state.positions(), _plug[c])];
+    }
+
+    /** Advance the machine one key press and store in TABLE the image of
+     *  every index through the plugboard, rotors and reflector at the
+     *  new rotor positions, as convert would give it. */
+    void advanceAndTabulate(int[] table) {
+        advanceRotors();
+        for (int c = 0; c < table.length; c += 1) {
+            table[c] = translate(c);
+        }
+    }
+
+    /** Convert the LEN alphabet indices starting at IN[OFF], storing the
+     *  results starting at OUT[OUTOFF] and advancing the machine once per
+     *  index.  IN and OUT may be the same array.  Allocates nothing. */
+    void convert(int[] in, int off, int len, int[] out, int outOff) {
+        checkRange(in.length, off, len);
+        checkRange(out.length, outOff, len);
+        for (int i = 0; i < len; i += 1) {
+            out[outOff + i] = convert(in[off + i]);
+        }
+    }
+
+    /** Convert the LEN characters starting at IN[OFF], storing the
+     *  results starting at OUT[OUTOFF].  As for convert(String), blanks
+     *  are copied through unchanged and do not advance the machine.  IN
+     *  and OUT may be the same array.  Returns the number of characters
+     *  stored (LEN).  Allocates nothing. */
+    int convert(char[] in, int off, int len, char[] out, int outOff) {
+        checkRange(in.length, off, len);
+        checkRange(out.length, outOff, len);
+        for (int i = 0; i < len; i += 1) {
+            char ch = in[off + i];
+            if (ch == ' ') {
+                out[outOff + i] = ch;
+            } else {
+                out[outOff + i] =
+                    _alphabet.toChar(convert(_alphabet.toInt(ch)));
             }
         }
+        return len;
+    }
 
-        c = _plugboardVar.permute(c);
-        for (int i = _myrotorVals.length - 1; i >= 0; i--) {
-            c = _myrotorVals[i].convertForward(c);
+    /** Convert the characters remaining in IN into OUT, stopping when
+     *  either buffer is exhausted, and advancing the positions of both.
+     *  Blanks are handled as for convert(String).  Allocates nothing. */
+    void convert(CharBuffer in, CharBuffer out) {
+        int len = Math.min(in.remaining(), out.remaining());
+        if (in.hasArray() && out.hasArray() && !out.isReadOnly()) {
+            convert(in.array(), in.arrayOffset() + in.position(), len,
+                    out.array(), out.arrayOffset() + out.position());
+            in.position(in.position() + len);
+            out.position(out.position() + len);
+            return;
+        }
+        for (int i = 0; i < len; i += 1) {
+            char ch = in.get();
+            if (ch == ' ') {
+                out.put(ch);
+            } else {
+                out.put(_alphabet.toChar(convert(_alphabet.toInt(ch))));
+            }
         }
-        for (int k = 1; k < _myrotorVals.length; k++) {
-            c = _myrotorVals[k].convertBackward(c);
+    }
+
+    /** Check that OFF and LEN describe a slice of an array of length
+     *  LENGTH. */
+    private static void checkRange(int length, int off, int len) {
+        if (off < 0 || len < 0 || off > length - len) {
+            throw error("bad slice [%d, %d) of array of length %d",
+                        off, off + len, length);
         }
-        return _plugboardVar.invert(c);
     }
 
     /** Returns the encoding/decoding of MSG, updating the state of
      *  the rotors accordingly. */
     String convert(String msg) {
-        String conversionOut = "";
+        StringBuilder conversionOut = new StringBuilder(msg.length());
         for (int i = 0; i < msg.length(); i++) {
             if (msg.charAt(i) == ' ') {
-                conversionOut += msg.charAt(i);
+                conversionOut.append(msg.charAt(i));
             } else {
                 int conversionInt = _alphabet.toInt(msg.charAt(i));
-                conversionOut += _alphabet.toChar(convert(conversionInt));
+                conversionOut.append(_alphabet.toChar(convert(conversionInt)));
+            }
+        }
+        return conversionOut.toString();
+    }
+
+    /** Return a machine with my alphabet, rotors, rotor positions and
+     *  plugboard, whose rotors move independently of mine. */
+    Machine copy() {
+        return new Machine(this);
+    }
+
+    /** Return an immutable definition of this machine with its current
+     *  rotors and plugboard, which may be shared among threads. */
+    MachineDefinition definition() {
+        return _definition.withPlugboard(plugboard());
+    }
+
+    /** Return a snapshot of my current rotor positions, for use with
+     *  definition(). */
+    MachineState state() {
+        return _state.copy();
+    }
+
+    /** Returns the encoding/decoding of MSG, exactly as for convert(MSG),
+     *  but converting pieces of MSG in parallel. */
+    String convertParallel(String msg) {
+        char[] chars = msg.toCharArray();
+        convertParallel(chars, 0, chars.length, chars, 0);
+        return new String(chars);
+    }
+
+    /** Convert the LEN characters starting at IN[OFF] into OUT starting
+     *  at OUT[OUTOFF], with the same result and final rotor positions as
+     *  convert(IN, OFF, LEN, OUT, OUTOFF).  The input is cut into chunks
+     *  that are converted on the common fork-join pool, each by a copy
+     *  of this machine advanced directly to the chunk's first letter.
+     *  IN and OUT may be the same array if OFF and OUTOFF are equal. */
+    void convertParallel(char[] in, int off, int len, char[] out,
+                         int outOff) {
+        checkRange(in.length, off, len);
+        checkRange(out.length, outOff, len);
+        if (len < 2 * PARALLEL_CHUNK) {
+            convert(in, off, len, out, outOff);
+            return;
+        }
+        int chunks = (len + PARALLEL_CHUNK - 1) / PARALLEL_CHUNK;
+        long[] presses = new long[chunks + 1];
+        IntStream.range(0, chunks).parallel().forEach(c -> {
+            int start = off + c * PARALLEL_CHUNK;
+            int end = Math.min(off + len, start + PARALLEL_CHUNK);
+            long count = 0;
+            for (int i = start; i < end; i += 1) {
+                if (in[i] != ' ') {
+                    count += 1;
+                }
             }
+            presses[c + 1] = count;
+        });
+        for (int c = 1; c <= chunks; c += 1) {
+            presses[c] += presses[c - 1];
         }
-        return conversionOut;
+        IntStream.range(0, chunks).parallel().forEach(c -> {
+            int start = c * PARALLEL_CHUNK;
+            int n = Math.min(len - start, PARALLEL_CHUNK);
+            Machine worker = copy();
+            worker.advanceBy(presses[c]);
+            worker.convert(in, off + start, n, out, outOff + start);
+        });
+        advanceBy(presses[chunks]);
     }
 
 
@@ -147,10 +598,49 @@ class Machine {
     /** arraylist of all rotors. */
     private ArrayList<Rotor> _allRotors;
 
-    /** array of rotors. */
-    private Rotor[] _myrotorVals;
+    /** Registry of _allRotors. */
+    private RotorRegistry _registry;
+
+    /** Definition of the rotors in my slots, or null before any are
+     *  inserted.  Its plugboard is the identity: mine is kept in _plug
+     *  and _unplug, so that it can change without a new definition. */
+    private MachineDefinition _definition;
+
+    /** Rotor order of _definition, or null. */
+    private RotorRegistry.Order _order;
+
+    /** Positions of the rotors in my slots. */
+    private MachineState _state;
 
-    /** plugboard. */
+    /** Identity permutation of my alphabet. */
+    private final Permutation _identity;
+
+    /** plugboard, or null if it has been changed since it was last
+     *  built. */
     private Permutation _plugboardVar;
 
+    /** Image of each index through the plugboard, and its inverse, or
+     *  null before the plugboard is set. */
+    private int[] _plug, _unplug;
+
+    /** Composed substitutions by stepping state, or null if caching is
+     *  disabled or nothing has been converted since the capacity was
+     *  set. */
+    private PathCache _paths;
+
+    /** Capacity of _paths, or 0 if caching is disabled. */
+    private int _pathCacheCapacity;
+
+    /** Default number of stepping states held by the path cache. */
+    private static final int DEFAULT_PATH_CACHE = 1 << 15;
+
+    /** Most table entries the default path cache may hold. */
+    private static final int PATH_CACHE_ENTRIES = 1 << 22;
+
+    /** Number of characters converted by each task of convertParallel. */
+    private static final int PARALLEL_CHUNK = 1 << 20;
+
+    /** Rotor positions last given to setRotors. */
+    private final int[] _start;
+
 }
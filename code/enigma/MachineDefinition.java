@@ -0,0 +1,199 @@
+package enigma;
+
+import static enigma.EnigmaException.*;
+
+/** An immutable description of a set-up machine: its alphabet, the
+ *  rotors in its slots (wirings, notches and whether each moves) and its
+ *  plugboard, with none of the rotor positions.  Those are kept in
+ *  MachineState objects, so one definition may be shared freely among
+ *  threads, each converting text with its own state.
+ *  @author Krish Rambhiya
+ */
+class MachineDefinition {
+
+    /** A definition over ALPHABET of a machine with the rotors ROTORS in
+     *  its slots, reflector first, and plugboard PLUGBOARD.  Only the
+     *  wirings, notches and kinds of the rotors are kept, not their
+     *  settings. */
+    MachineDefinition(Alphabet alphabet, Rotor[] rotors,
+                      Permutation plugboard) {
+        this(alphabet, rotors, new Stepping(rotors, alphabet.size()),
+             plugboard);
+    }
+
+    /** A definition as above whose rotors ROTORS have the compiled
+     *  stepping STEPPING. */
+    MachineDefinition(Alphabet alphabet, Rotor[] rotors, Stepping stepping,
+                      Permutation plugboard) {
+        int n = rotors.length;
+        if (n < 2 || !rotors[0].reflecting()) {
+            throw error("a machine needs a reflector and at least one"
+                        + " other rotor");
+        }
+        _alphabet = alphabet;
+        _names = new String[n];
+        _perms = new Permutation[n];
+        _forward = new int[n][][];
+        _backward = new int[n][][];
+        for (int k = 0; k < n; k += 1) {
+            _names[k] = rotors[k].name();
+            _perms[k] = rotors[k].permutation();
+            _forward[k] = rotors[k].forwardTable();
+            _backward[k] = rotors[k].backwardTable();
+        }
+        _stepping = stepping;
+        _plugboard = plugboard;
+    }
+
+    /** A definition with the rotors of DEF and plugboard PLUGBOARD. */
+    private MachineDefinition(MachineDefinition def, Permutation plugboard) {
+        _alphabet = def._alphabet;
+        _names = def._names;
+        _perms = def._perms;
+        _forward = def._forward;
+        _backward = def._backward;
+        _stepping = def._stepping;
+        _plugboard = plugboard;
+    }
+
+    /** Return a definition with my rotors and plugboard PLUGBOARD,
+     *  sharing my tables. */
+    MachineDefinition withPlugboard(Permutation plugboard) {
+        return new MachineDefinition(this, plugboard);
+    }
+
+    /** Return my alphabet. */
+    Alphabet alphabet() {
+        return _alphabet;
+    }
+
+    /** Return the number of rotor slots. */
+    int numRotors() {
+        return _names.length;
+    }
+
+    /** Return the name of the rotor in slot K. */
+    String rotorName(int k) {
+        return _names[k];
+    }
+
+    /** Return the compiled stepping of my rotors. */
+    Stepping stepping() {
+        return _stepping;
+    }
+
+    /** Return my plugboard. */
+    Permutation plugboard() {
+        return _plugboard;
+    }
+
+    /** Return a new state with the rotors (not counting the reflector) at
+     *  the positions given by SETTING, a string of numRotors()-1
+     *  characters of my alphabet, leftmost rotor first. */
+    MachineState newState(String setting) {
+        if (setting.length() != numRotors() - 1) {
+            throw error("Length is wrong for Rotor setting.");
+        }
+        int[] positions = new int[numRotors()];
+        for (int k = 1; k < positions.length; k += 1) {
+            positions[k] = _alphabet.toInt(setting.charAt(k - 1));
+        }
+        return new MachineState(positions);
+    }
+
+    /** Advance STATE one key press and return the conversion of C (an
+     *  alphabet index) at the new positions. */
+    int convert(MachineState state, int c) {
+        if (c < 0 || c >= _alphabet.size()) {
+            throw error("index out of range: %d", c);
+        }
+        state.step(_stepping);
+        return _plugboard.invert(scramble(state.positions(),
+                                          _plugboard.permute(c)));
+    }
+
+    /** Return the image of C through the rotors from right to left, the
+     *  reflector, and the rotors back again, with the rotor in each slot
+     *  K at position POS[K].  This is the whole conversion but for the
+     *  plugboard, shared by every machine with these rotors. */
+    int scramble(int[] pos, int c) {
+        for (int k = pos.length - 1; k >= 0; k -= 1) {
+            c = forward(k, pos[k], c);
+        }
+        for (int k = 1; k < pos.length; k += 1) {
+            c = backward(k, pos[k], c);
+        }
+        return c;
+    }
+
+    /** Convert the LEN alphabet indices starting at IN[OFF] into OUT
+     *  starting at OUT[OUTOFF], advancing STATE once per index.
+     *  Allocates nothing. */
+    void convert(MachineState state, int[] in, int off, int len,
+                 int[] out, int outOff) {
+        if (off < 0 || len < 0 || off > in.length - len
+            || outOff < 0 || outOff > out.length - len) {
+            throw error("bad slice of length %d", len);
+        }
+        for (int i = 0; i < len; i += 1) {
+            out[outOff + i] = convert(state, in[off + i]);
+        }
+    }
+
+    /** Returns the encoding/decoding of MSG starting at STATE, which is
+     *  advanced accordingly.  Blanks are copied and do not advance
+     *  STATE, as for Machine.convert(String). */
+    String convert(MachineState state, String msg) {
+        StringBuilder result = new StringBuilder(msg.length());
+        for (int i = 0; i < msg.length(); i += 1) {
+            char ch = msg.charAt(i);
+            if (ch == ' ') {
+                result.append(ch);
+            } else {
+                result.append(_alphabet.toChar(
+                    convert(state, _alphabet.toInt(ch))));
+            }
+        }
+        return result.toString();
+    }
+
+    /** Return the conversion of P by the rotor in slot K at position
+     *  SETTING. */
+    int forward(int k, int setting, int p) {
+        if (_forward[k] != null) {
+            return _forward[k][setting][p];
+        }
+        Permutation perm = _perms[k];
+        return perm.wrap(perm.permute(p + setting) - setting);
+    }
+
+    /** Return the conversion of E by the inverse of the rotor in slot K
+     *  at position SETTING. */
+    int backward(int k, int setting, int e) {
+        if (_backward[k] != null) {
+            return _backward[k][setting][e];
+        }
+        Permutation perm = _perms[k];
+        return perm.wrap(perm.invert(e + setting) - setting);
+    }
+
+    /** Alphabet of the machine. */
+    private final Alphabet _alphabet;
+
+    /** Name of the rotor in each slot. */
+    private final String[] _names;
+
+    /** Permutation of the rotor in each slot. */
+    private final Permutation[] _perms;
+
+    /** Forward and backward conversions of the rotor in each slot, by
+     *  setting and input, or null for large alphabets. */
+    private final int[][][] _forward, _backward;
+
+    /** Stepping of my rotors. */
+    private final Stepping _stepping;
+
+    /** Plugboard. */
+    private final Permutation _plugboard;
+
+}
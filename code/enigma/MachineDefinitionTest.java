@@ -0,0 +1,87 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/** The suite of all JUnit tests for the MachineDefinition and
+ *  MachineState classes.
+ *  @author
+ */
+public class MachineDefinitionTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /** A message long enough to turn every moving rotor. */
+    private static final String MESSAGE;
+    static {
+        StringBuilder msg = new StringBuilder();
+        for (int i = 0; i < 20000; i += 1) {
+            msg.append((char) ('A' + (i * 5 + i / 26) % 26));
+        }
+        MESSAGE = msg.toString();
+    }
+
+    @Test
+    public void testMatchesMachine() {
+        Machine M = MachineTest.navalMachine(MachineTest.ROTORS, "AXLE",
+                                             "(HQ) (EX) (IP)");
+        MachineDefinition def = M.definition();
+        MachineState state = def.newState("AXLE");
+        assertEquals(M.state(), state);
+        assertEquals(M.convert(MESSAGE), def.convert(state, MESSAGE));
+        assertEquals(M.state(), state);
+        MachineDefinition plain = MachineTest.navalMachine(
+            MachineTest.ROTORS, "AAAA", "(AQ) (EP)").definition();
+        assertEquals("IHBDQ QMTQZ",
+                     plain.convert(plain.newState("AAAA"), "HELLO WORLD"));
+    }
+
+    @Test
+    public void testCopyIsSnapshot() {
+        MachineDefinition def = MachineTest.navalMachine(
+            new String[] { "B", "Beta", "VI", "VII", "VIII" }, "ZMZM",
+            "(AB)").definition();
+        MachineState state = def.newState("ZMZM");
+        def.convert(state, MESSAGE.substring(0, 700));
+        MachineState snapshot = state.copy();
+        String first = def.convert(state, MESSAGE);
+        assertEquals(first, def.convert(snapshot, MESSAGE));
+        assertEquals(state, snapshot);
+        MachineState other = def.newState("AAAA");
+        other.copyFrom(snapshot);
+        assertEquals(snapshot, other);
+    }
+
+    @Test
+    public void testSharedAcrossThreads() throws InterruptedException {
+        Machine M = MachineTest.navalMachine(MachineTest.ROTORS, "QWER",
+                                             "(AZ)");
+        MachineDefinition def = M.definition();
+        String expected = M.convert(MESSAGE);
+        Thread[] threads = new Thread[4];
+        AtomicReference<String> failure = new AtomicReference<>();
+        for (int t = 0; t < threads.length; t += 1) {
+            threads[t] = new Thread(() -> {
+                for (int k = 0; k < 5; k += 1) {
+                    String result = def.convert(def.newState("QWER"),
+                                                MESSAGE);
+                    if (!result.equals(expected)) {
+                        failure.set("mismatch");
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertNull(failure.get());
+    }
+
+}
@@ -0,0 +1,70 @@
+package enigma;
+
+import java.util.Arrays;
+
+/** The rotor positions of one use of a MachineDefinition.  A state is
+ *  owned by a single thread; many states may share one definition.
+ *  Copying a state copies a single small array.
+ *  @author Krish Rambhiya
+ */
+class MachineState {
+
+    /** A state whose rotor in slot #K is at position POSITIONS[K], where
+     *  slot 0 holds the reflector. */
+    MachineState(int[] positions) {
+        _positions = positions.clone();
+    }
+
+    /** Return the position of the rotor in slot K. */
+    int position(int k) {
+        return _positions[k];
+    }
+
+    /** Return the number of slots in this state. */
+    int size() {
+        return _positions.length;
+    }
+
+    /** Return an independent copy of this state. */
+    MachineState copy() {
+        return new MachineState(_positions);
+    }
+
+    /** Set this state to the positions of OTHER, which must have as many
+     *  slots, without allocating. */
+    void copyFrom(MachineState other) {
+        System.arraycopy(other._positions, 0, _positions, 0,
+                         _positions.length);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof MachineState
+            && Arrays.equals(_positions, ((MachineState) obj)._positions);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(_positions);
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(_positions);
+    }
+
+    /** Advance these positions one key press according to STEPPING. */
+    void step(Stepping stepping) {
+        stepping.step(_positions);
+    }
+
+    /** Return the array of positions itself, which MachineDefinition
+     *  and Machine update in place. */
+    int[] positions() {
+        return _positions;
+    }
+
+    /** Position of the rotor in each slot. */
+    private final int[] _positions;
+
+}
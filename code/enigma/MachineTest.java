@@ -0,0 +1,335 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the Machine class.
+ *  @author
+ */
+public class MachineTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Notches of the naval moving rotors. */
+    private static final String[][] NOTCHES = {
+        { "I", "Q" }, { "II", "E" }, { "III", "V" }, { "IV", "J" },
+        { "V", "Z" }, { "VI", "ZM" }, { "VII", "ZM" }, { "VIII", "ZM" },
+    };
+
+    /** Return the naval rotor set in the A setting. */
+    static ArrayList<Rotor> navalRotors() {
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        for (String[] rotor : NOTCHES) {
+            rotors.add(new MovingRotor(rotor[0],
+                new Permutation(NAVALA.get(rotor[0]), UPPER), rotor[1]));
+        }
+        for (String name : new String[] { "Beta", "Gamma" }) {
+            rotors.add(new FixedRotor(name,
+                new Permutation(NAVALA.get(name), UPPER)));
+        }
+        for (String name : new String[] { "B", "C" }) {
+            rotors.add(new Reflector(name,
+                new Permutation(NAVALA.get(name), UPPER)));
+        }
+        return rotors;
+    }
+
+    /** Return a five-slot, three-pawl naval machine with rotors ROTORS,
+     *  set to SETTING, with plugboard CYCLES. */
+    static Machine navalMachine(String[] rotors, String setting,
+                                String cycles) {
+        Machine M = new Machine(UPPER, 5, 3, navalRotors());
+        M.insertRotors(rotors);
+        M.setRotors(setting);
+        M.setPlugboard(new Permutation(cycles, UPPER));
+        return M;
+    }
+
+    /** Standard rotor order used by these tests. */
+    static final String[] ROTORS = { "B", "Beta", "I", "II", "III" };
+
+    /** Return a three-slot, two-pawl machine with reflector B and moving
+     *  rotors I, II and III available, notched at the respective
+     *  elements of NOTCHES. */
+    static Machine smallMachine(String... notches) {
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        rotors.add(new Reflector("B", new Permutation(NAVALA.get("B"),
+                                                      UPPER)));
+        String[] names = { "I", "II", "III" };
+        for (int i = 0; i < names.length; i += 1) {
+            rotors.add(new MovingRotor(names[i],
+                new Permutation(NAVALA.get(names[i]), UPPER), notches[i]));
+        }
+        return new Machine(UPPER, 3, 2, rotors);
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testConvertString() {
+        Machine M = navalMachine(ROTORS, "AAAA", "(AQ) (EP)");
+        assertEquals("IHBDQ QMTQZ", M.convert("HELLO WORLD"));
+    }
+
+    @Test
+    public void testBulkCharMatchesString() {
+        String msg = "FROM HIS SHOULDER HIAWATHA TOOK THE CAMERA OF ROSEWOOD";
+        String expected =
+            navalMachine(ROTORS, "AXLE", "(HQ) (EX) (IP)").convert(msg);
+        Machine M = navalMachine(ROTORS, "AXLE", "(HQ) (EX) (IP)");
+        char[] buf = ("##" + msg).toCharArray();
+        char[] out = new char[msg.length() + 1];
+        assertEquals(msg.length(), M.convert(buf, 2, msg.length(), out, 1));
+        assertEquals(expected, new String(out, 1, msg.length()));
+
+        M = navalMachine(ROTORS, "AXLE", "(HQ) (EX) (IP)");
+        CharBuffer src = CharBuffer.wrap(msg);
+        CharBuffer dst = CharBuffer.allocate(msg.length());
+        M.convert(src, dst);
+        assertEquals(0, src.remaining());
+        dst.flip();
+        assertEquals(expected, dst.toString());
+    }
+
+    @Test
+    public void testBulkIndices() {
+        String msg = "HELLOWORLD";
+        String expected = navalMachine(ROTORS, "AAAA", "").convert(msg);
+        int[] idx = new int[msg.length()];
+        for (int i = 0; i < idx.length; i += 1) {
+            idx[i] = UPPER.toInt(msg.charAt(i));
+        }
+        navalMachine(ROTORS, "AAAA", "").convert(idx, 0, idx.length, idx, 0);
+        for (int i = 0; i < idx.length; i += 1) {
+            assertEquals(expected.charAt(i), UPPER.toChar(idx[i]));
+        }
+    }
+
+    @Test
+    public void testPathCacheMatchesUncached() {
+        StringBuilder msg = new StringBuilder();
+        for (int i = 0; i < 20000; i += 1) {
+            msg.append((char) ('A' + (i * 7 + i / 26) % 26));
+        }
+        Machine plain = navalMachine(ROTORS, "AXLE", "(HQ) (EX) (IP)");
+        plain.setPathCacheCapacity(0);
+        String expected = plain.convert(msg.toString());
+        for (int capacity : new int[] { 1, 5, 1 << 15 }) {
+            Machine M = navalMachine(ROTORS, "AXLE", "(HQ) (EX) (IP)");
+            M.setPathCacheCapacity(capacity);
+            assertEquals(expected, M.convert(msg.toString()));
+            assertEquals(msg.length(),
+                         M.pathCacheHits() + M.pathCacheMisses());
+        }
+        assertEquals(0, plain.pathCacheHits());
+    }
+
+    @Test
+    public void testPathCacheRevisitsStates() {
+        Machine M = navalMachine(ROTORS, "AAAA", "");
+        String msg = "HELLOWORLD";
+        String first = M.convert(msg);
+        M.setRotors("AAAA");
+        assertEquals(first, M.convert(msg));
+        assertEquals(msg.length(), M.pathCacheHits());
+        assertEquals(msg.length(), M.pathCacheMisses());
+        M.setPlugboard(new Permutation("(AQ)", UPPER));
+        M.setRotors("AAAA");
+        assertEquals(navalMachine(ROTORS, "AAAA", "(AQ)").convert(msg),
+                     M.convert(msg));
+        assertEquals(msg.length(), M.pathCacheMisses());
+        assertEquals(2 * msg.length(), M.pathCacheHits());
+        M.insertRotors(ROTORS.clone());
+        M.setRotors("AAAA");
+        assertEquals(navalMachine(ROTORS, "AAAA", "(AQ)").convert(msg),
+                     M.convert(msg));
+        assertEquals(msg.length(), M.pathCacheMisses());
+        M.insertRotors(new String[] { "B", "Beta", "I", "III", "II" });
+        M.setRotors("AAAA");
+        M.convert(msg);
+        assertEquals(2 * msg.length(), M.pathCacheMisses());
+    }
+
+    /** Check that advancing a copy of M by N key presses and then
+     *  converting PROBE agrees with converting N letters through M and
+     *  then PROBE. */
+    private static void checkAdvance(Machine M, Machine copy, int n,
+                                     String probe) {
+        for (int i = 0; i < n; i += 1) {
+            M.convert(0);
+        }
+        copy.advanceBy(n);
+        assertEquals("advance by " + n, M.convert(probe), copy.convert(probe));
+    }
+
+    @Test
+    public void testAdvanceByMatchesConvert() {
+        String[][] orders = {
+            ROTORS, { "B", "Beta", "VI", "VII", "VIII" },
+            { "C", "Gamma", "V", "VI", "II" },
+        };
+        for (String[] order : orders) {
+            for (String setting : new String[] { "AAAA", "AQEV", "ZMZM" }) {
+                for (int n : new int[] { 0, 1, 25, 26, 27, 700, 17603 }) {
+                    checkAdvance(navalMachine(order, setting, ""),
+                                 navalMachine(order, setting, ""),
+                                 n, "PROBE");
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testAdvanceByFourPawls() {
+        for (int n : new int[] { 1, 26, 677, 20000, 123457 }) {
+            Machine M = new Machine(UPPER, 5, 4, navalRotors());
+            Machine copy = new Machine(UPPER, 5, 4, navalRotors());
+            for (Machine m : new Machine[] { M, copy }) {
+                m.insertRotors(new String[] { "B", "VI", "VII", "I", "II" });
+                m.setRotors("ZQMD");
+                m.setPlugboard(new Permutation("(AB)", UPPER));
+            }
+            checkAdvance(M, copy, n, "ANOTHERPROBE");
+        }
+    }
+
+    @Test
+    public void testCopyKeepsRegistryAndCacheCapacity() {
+        Machine M = navalMachine(ROTORS, "AAAA", "(AQ)");
+        String msg = "HELLOWORLD";
+        for (int capacity : new int[] { 0, 16 }) {
+            M.setPathCacheCapacity(capacity);
+            Machine copy = M.copy();
+            assertSame(M.rotorRegistry(), copy.rotorRegistry());
+            String first = copy.convert(msg);
+            copy.setRotors("AAAA");
+            assertEquals(first, copy.convert(msg));
+            assertEquals(capacity == 0 ? 0 : msg.length(),
+                         copy.pathCacheHits());
+            assertEquals(0, M.pathCacheHits() + M.pathCacheMisses());
+        }
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testAdvanceByWithoutRotors() {
+        new Machine(UPPER, 5, 3, navalRotors()).advanceBy(100);
+    }
+
+    @Test
+    public void testSeekLongDistances() {
+        Machine M = navalMachine(ROTORS, "AXLE", "(HQ)");
+        Machine copy = navalMachine(ROTORS, "AXLE", "(HQ)");
+        long far = 1_000_000_000_000L;
+        M.advanceBy(far);
+        M.advanceBy(12345);
+        copy.seek(far + 12345);
+        assertEquals(M.convert("PROBE"), copy.convert("PROBE"));
+        copy.seek(0);
+        assertEquals(navalMachine(ROTORS, "AXLE", "(HQ)").convert("PROBE"),
+                     copy.convert("PROBE"));
+    }
+
+    @Test
+    public void testConvertParallelMatchesSerial() {
+        char[] msg = new char[(5 << 20) / 2 + 17];
+        for (int i = 0; i < msg.length; i += 1) {
+            msg[i] = i % 7 == 3 ? ' ' : (char) ('A' + (i * 11 + i / 29) % 26);
+        }
+        Machine serial = navalMachine(ROTORS, "AXLE", "(HQ) (EX) (IP)");
+        char[] expected = new char[msg.length];
+        serial.convert(msg, 0, msg.length, expected, 0);
+        Machine M = navalMachine(ROTORS, "AXLE", "(HQ) (EX) (IP)");
+        M.convertParallel(msg, 0, msg.length, msg, 0);
+        assertArrayEquals(expected, msg);
+        assertEquals(serial.convert("PROBE"), M.convert("PROBE"));
+        assertEquals("IHBDQ QMTQZ",
+                     navalMachine(ROTORS, "AAAA", "(AQ) (EP)")
+                     .convertParallel("HELLO WORLD"));
+    }
+
+    @Test
+    public void testCopyIsIndependent() {
+        Machine M = navalMachine(ROTORS, "AAAA", "(AQ) (EP)");
+        Machine copy = M.copy();
+        assertEquals("IHBDQ QMTQZ", M.convert("HELLO WORLD"));
+        assertEquals("IHBDQ QMTQZ", copy.convert("HELLO WORLD"));
+    }
+
+    @Test
+    public void testMachinesShareRotorSet() {
+        ArrayList<Rotor> rotors = navalRotors();
+        Machine M1 = new Machine(UPPER, 5, 3, rotors);
+        Machine M2 = new Machine(UPPER, 5, 3, rotors);
+        for (Machine M : new Machine[] { M1, M2 }) {
+            M.insertRotors(ROTORS);
+            M.setRotors("AAAA");
+            M.setPlugboard(new Permutation("(AQ) (EP)", UPPER));
+        }
+        assertEquals("IHBDQ", M1.convert("HELLO"));
+        assertEquals("IHBDQ", M2.convert("HELLO"));
+        assertEquals("QMTQZ", M1.convert("WORLD"));
+        assertEquals("QMTQZ", M2.convert("WORLD"));
+    }
+
+    @Test
+    public void testPlugPairs() {
+        Machine M = navalMachine(ROTORS, "AAAA", "(AE)");
+        M.unplug(UPPER.toInt('E'));
+        M.plugPair(UPPER.toInt('A'), UPPER.toInt('Q'));
+        M.plugPair(UPPER.toInt('E'), UPPER.toInt('P'));
+        assertEquals(UPPER.toInt('Q'), M.plugPartner(UPPER.toInt('A')));
+        assertEquals("IHBDQ QMTQZ", M.convert("HELLO WORLD"));
+        M.swapPlugPartners(UPPER.toInt('A'), UPPER.toInt('E'));
+        M.setRotors("AAAA");
+        Machine expected = navalMachine(ROTORS, "AAAA", "(AP) (EQ)");
+        assertEquals(expected.convert("HELLO WORLD"),
+                     M.convert("HELLO WORLD"));
+        M.unplug(UPPER.toInt('P'));
+        assertEquals(UPPER.toInt('A'), M.plugPartner(UPPER.toInt('A')));
+        assertEquals(25, M.plugboard().cycleCount());
+        assertEquals(24, M.plugboard().fixedPoints());
+        assertEquals(UPPER.toInt('E'),
+                     M.definition().plugboard().permute(UPPER.toInt('Q')));
+    }
+
+    @Test
+    public void testPlugChangesKeepPathCache() {
+        Machine M = navalMachine(ROTORS, "AAAA", "(AQ) (EP)");
+        Machine plain = navalMachine(ROTORS, "AAAA", "(AQ) (EP)");
+        plain.setPathCacheCapacity(0);
+        String msg = "HELLOWORLDHELLOWORLD";
+        assertEquals(plain.convert(msg), M.convert(msg));
+        long misses = M.pathCacheMisses();
+        for (int i = 0; i < 10; i += 1) {
+            M.setRotors("AAAA");
+            plain.setRotors("AAAA");
+            M.plugPair(i, i + 13);
+            plain.plugPair(i, i + 13);
+            assertEquals(plain.convert(msg), M.convert(msg));
+        }
+        assertEquals(misses, M.pathCacheMisses());
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testUnplugLongCycle() {
+        navalMachine(ROTORS, "AAAA", "(ABC)").unplug(UPPER.toInt('A'));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testBadSlice() {
+        navalMachine(ROTORS, "AAAA", "").convert(new char[4], 2, 3,
+                                                 new char[4], 0);
+    }
+
+}
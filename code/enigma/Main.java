@@ -1,12 +1,39 @@
 package enigma;
 
-import java.io.File;
+import java.io.BufferedReader;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.PrintStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.UnixDomainSocketAddress;
+
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Scanner;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static enigma.EnigmaException.*;
 
@@ -18,20 +45,108 @@ public final class Main {
     /** Machine alphabet. */
     private Alphabet _alphabet;
 
+    /** Size of the character buffers used for message input and output. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** Size of the windows in which --mmap maps the input file. */
+    private static final long MAP_WINDOW = 1L << 28;
+
+    /** Characters below this are ASCII. */
+    private static final char ASCII_LIMIT = 0x80;
+
+    /** Number of letters in each output group. */
+    private static final int GROUP_SIZE = 5;
+
+    /** Most message characters in each piece of a section converted as
+     *  one task when sections are processed concurrently. */
+    private static final int CHUNK_SIZE = 1 << 16;
+
+    /** Most input characters, for each worker thread, in the pieces of
+     *  sections that may await output when sections are processed
+     *  concurrently. */
+    private static final int PENDING_PER_THREAD = 4 * CHUNK_SIZE;
+
+    /** Number of worker threads converting sections concurrently, or 0
+     *  to convert the input as a single stream. */
+    private int _threads;
+
     /** Type of input. */
-    private Scanner _input;
+    private Reader _input;
 
     /** Type of scanner. */
     private Scanner _config;
 
+    /** Contents of the configuration file. */
+    private byte[] _configText;
+
+    /** File holding the compiled configuration, or null to parse the
+     *  configuration file on every run. */
+    private Path _configCache;
+
+    /** Address on which to serve requests (see EnigmaServer) instead of
+     *  converting an input file, or null. */
+    private SocketAddress _serve;
+
+    /** Configuration files to load before serving requests. */
+    private String[] _serveConfigs;
+
+    /** Directory within which configuration files named by requests
+     *  may be loaded, or null to allow only _serveConfigs. */
+    private Path _configDir;
+
+    /** Longest string accepted in a request to the server, in bytes. */
+    private int _maxRequest = EnigmaServer.MAX_STRING;
+
+    /** Input file to be mapped into memory rather than read through
+     *  _input, or null. */
+    private Path _mapInput;
+
+    /** True iff the input file is to be mapped into memory. */
+    private boolean _mmap;
+
+    /** True iff a summary of the metrics is to be printed at exit. */
+    private boolean _stats;
+
     /** Encoded messages file. */
-    private PrintStream _output;
+    private GroupedWriter _output;
 
     /** rotors available to us. */
     private ArrayList<Rotor> _alltheRotors = new ArrayList<>();
 
     /** Process a sequence of encryptions and decryptions, as
-     *  specified by ARGS, where 1 <= ARGS.length <= 3.
+     *  specified by ARGS, which consists of options followed by 1 to 3
+     *  file names.  The options are
+     *      --threads=N  Convert the sections of the input (each setting
+     *                   line and the messages following it) on N
+     *                   worker threads, writing the results in order.
+     *      --config-cache=FILE  Keep the configuration compiled in FILE,
+     *                   reading it from there rather than parsing the
+     *                   configuration file whenever the configuration
+     *                   is unchanged since FILE was written, and
+     *                   rewriting FILE otherwise.
+     *      --mmap       Map the input file into memory and read it as
+     *                   ASCII bytes, rather than decoding it through a
+     *                   Reader.  Requires input and output files and
+     *                   an ASCII alphabet, and ignores --threads.
+     *      --stats      Collect metrics (see Metrics) and print a
+     *                   summary of them on the standard error at exit.
+     *                   Setting the system property enigma.metrics to
+     *                   true collects them without the summary.
+     *      --serve=ADDRESS  Instead of converting a file, serve
+     *                   conversion requests (see EnigmaServer) on
+     *                   ADDRESS, either a TCP port on the loopback
+     *                   interface or unix:PATH for a Unix domain socket,
+     *                   until killed, on --threads worker threads (1 by
+     *                   default).  The arguments are then any number of
+     *                   configuration files to load in advance; a
+     *                   request may name only these, or files within
+     *                   --config-dir.
+     *      --config-dir=DIR  With --serve, load a configuration file
+     *                   named by a request, relative to DIR, when it is
+     *                   first named, if it lies within DIR.
+     *      --max-request=BYTES  With --serve, close any connection
+     *                   sending a request string longer than BYTES
+     *                   (EnigmaServer.MAX_STRING by default).
      *  ARGS[0] is the name of a configuration file.
      *  ARGS[1] is optional; when present, it names an input file
      *  containing messages.  Otherwise, input comes from the standard
@@ -51,67 +166,780 @@ public final class Main {
 
     /** Check ARGS and open the necessary files (see comment on main). */
     Main(String[] args) {
+        args = parseOptions(args);
+        if (_serve != null) {
+            _serveConfigs = args;
+            return;
+        }
         if (args.length < 1 || args.length > 3) {
             throw error("Only 1, 2, or 3 command-line arguments allowed");
         }
 
-        _config = getInput(args[0]);
+        _configText = readFile(args[0]);
 
-        if (args.length > 1) {
-            _input = getInput(args[1]);
+        if (_mmap) {
+            if (args.length < 3) {
+                throw error("--mmap needs input and output files");
+            }
+            _mapInput = Paths.get(args[1]);
+            if (!Files.isReadable(_mapInput)) {
+                throw error("could not open %s", args[1]);
+            }
+        } else if (args.length > 1) {
+            _input = getReader(args[1]);
         } else {
-            _input = new Scanner(System.in);
+            _input = toReader(System.in);
         }
 
         if (args.length > 2) {
             _output = getOutput(args[2]);
         } else {
-            _output = System.out;
+            _output = toWriter(
+                new FileOutputStream(FileDescriptor.out).getChannel());
         }
     }
 
-    /** Return a Scanner reading from the file named NAME. */
-    private Scanner getInput(String name) {
+    /** A Main writing the messages that convert converts to OUTPUT,
+     *  grouped as by main, on THREADS worker threads if THREADS is
+     *  positive (see --threads), and as a single stream otherwise. */
+    Main(WritableByteChannel output, int threads) {
+        _output = toWriter(output);
+        _threads = threads;
+    }
+
+    /** Apply the options at the start of ARGS (see comment on main),
+     *  returning the remaining arguments. */
+    private String[] parseOptions(String[] args) {
+        int k;
+        for (k = 0; k < args.length && args[k].startsWith("--"); k += 1) {
+            String option = args[k];
+            if (option.startsWith("--threads=")) {
+                _threads = parseCount(option, "--threads=".length());
+            } else if (option.startsWith("--config-cache=")) {
+                _configCache =
+                    Paths.get(option.substring("--config-cache=".length()));
+            } else if (option.equals("--mmap")) {
+                _mmap = true;
+            } else if (option.equals("--stats")) {
+                _stats = true;
+            } else if (option.startsWith("--serve=")) {
+                _serve = parseAddress(option, "--serve=".length());
+            } else if (option.startsWith("--config-dir=")) {
+                _configDir =
+                    Paths.get(option.substring("--config-dir=".length()));
+            } else if (option.startsWith("--max-request=")) {
+                _maxRequest = parseCount(option, "--max-request=".length());
+            } else {
+                throw error("unknown option %s", option);
+            }
+        }
+        if (_stats || Boolean.getBoolean("enigma.metrics")) {
+            Metrics.enable();
+        }
+        return Arrays.copyOfRange(args, k, args.length);
+    }
+
+    /** Return the positive number at position START of OPTION. */
+    private static int parseCount(String option, int start) {
+        try {
+            int n = Integer.parseInt(option.substring(start));
+            if (n > 0) {
+                return n;
+            }
+        } catch (NumberFormatException excp) {
+            /* Fall through to the error below. */
+        }
+        throw error("bad option %s", option);
+    }
+
+    /** Return the socket address at position START of OPTION: a port on
+     *  the loopback interface or unix:PATH. */
+    private static SocketAddress parseAddress(String option, int start) {
+        String address = option.substring(start);
+        if (address.startsWith("unix:")) {
+            return UnixDomainSocketAddress.of(address.substring(5));
+        }
+        try {
+            int port = Integer.parseInt(address);
+            if (port >= 0 && port <= 0xffff) {
+                return new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                                             port);
+            }
+        } catch (NumberFormatException excp) {
+            /* Fall through to the error below. */
+        }
+        throw error("bad option %s", option);
+    }
+
+    /** Return the contents of the file named NAME. */
+    private static byte[] readFile(String name) {
+        try {
+            return Files.readAllBytes(Paths.get(name));
+        } catch (IOException excp) {
+            throw error("could not open %s", name);
+        }
+    }
+
+    /** Return a buffered Reader reading from the file named NAME. */
+    private Reader getReader(String name) {
         try {
-            return new Scanner(new File(name));
+            return toReader(new FileInputStream(name));
         } catch (IOException excp) {
             throw error("could not open %s", name);
         }
     }
 
-    /** Return a PrintStream writing to the file named NAME. */
-    private PrintStream getOutput(String name) {
+    /** Return a GroupedWriter writing to the file named NAME. */
+    private GroupedWriter getOutput(String name) {
         try {
-            return new PrintStream(new File(name));
+            return toWriter(new FileOutputStream(name).getChannel());
         } catch (IOException excp) {
             throw error("could not open %s", name);
         }
     }
 
+    /** Return a buffered Reader over IN. */
+    private static Reader toReader(InputStream in) {
+        return new BufferedReader(new InputStreamReader(in), BUFFER_SIZE);
+    }
+
+    /** Return a GroupedWriter over OUT, encoding in the default
+     *  charset. */
+    private static GroupedWriter toWriter(WritableByteChannel out) {
+        return new GroupedWriter(out, Charset.defaultCharset(), GROUP_SIZE);
+    }
+
     /** Configure an Enigma machine from the contents of configuration
      *  file _config and apply it to the messages in _input, sending the
-     *  results to _output. */
+     *  results to _output.  Input is consumed in fixed-size chunks and
+     *  each converted letter is written as soon as it is produced, so
+     *  memory use does not depend on the length of a message line. */
     private void process() {
-        Machine newerMachine = readConfig();
-        String newsetting = _input.nextLine();
-        String newmessage = "";
-        setUp(newerMachine, newsetting);
-
-        while (_input.hasNextLine()) {
-            String newerString = _input.nextLine();
-            if (newerString.contains("*")) {
-                setUp(newerMachine, newerString);
+        if (_serve != null) {
+            serve();
+            return;
+        }
+        try {
+            convert(readConfig());
+        } catch (IOException excp) {
+            throw error("I/O error: %s", excp.getMessage());
+        } finally {
+            if (_stats) {
+                System.err.print(Metrics.summary());
+            }
+        }
+    }
+
+    /** Apply the messages in INPUT, read as main reads its input file,
+     *  to MACHINE, as configured by a configuration file, writing the
+     *  results to _output. */
+    void convert(Machine machine, InputStream input) throws IOException {
+        _alphabet = machine.alphabet();
+        _input = toReader(input);
+        convert(machine);
+    }
+
+    /** Apply the messages in _mapInput or _input to MACHINE, writing the
+     *  results to _output. */
+    private void convert(Machine machine) throws IOException {
+        try {
+            if (_mapInput != null) {
+                mapMessages(machine);
+            } else if (_threads > 0) {
+                processSections(machine);
             } else {
-                newmessage = newerMachine.convert(
-                        newerString.replaceAll(" ", ""));
-                printMessageLine(newmessage);
+                streamMessages(machine);
             }
+        } finally {
+            _output.flush();
         }
     }
 
+    /** Serve requests on _serve until killed, having loaded the
+     *  configurations named in _serveConfigs.  The request latencies are
+     *  reported on the standard error when the server stops. */
+    private void serve() {
+        try (EnigmaServer server = new EnigmaServer(
+                 _serve, Math.max(1, _threads),
+                 name -> loadConfig(allowedConfig(name)), _maxRequest,
+                 EnigmaServer.MAX_CONFIGS)) {
+            for (String name : _serveConfigs) {
+                server.addConfig(name, loadConfig(name));
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                System.err.println(server.latencies().summary());
+                if (_stats) {
+                    System.err.print(Metrics.summary());
+                }
+            }));
+            System.err.printf("serving on %s%n", server.address());
+            server.serve();
+        } catch (IOException excp) {
+            throw error("server: %s", excp.getMessage());
+        }
+    }
+
+    /** Return the file that configuration NAME, named by a request to
+     *  the server, refers to: NAME resolved against _configDir, which it
+     *  must lie within once links are followed. */
+    private String allowedConfig(String name) {
+        if (_configDir != null) {
+            try {
+                Path dir = _configDir.toRealPath(),
+                    file = dir.resolve(name).toRealPath();
+                if (file.startsWith(dir) && Files.isRegularFile(file)) {
+                    return file.toString();
+                }
+            } catch (IOException | InvalidPathException excp) {
+                /* Fall through to the error below. */
+            }
+        }
+        throw error("unknown configuration %s", name);
+    }
+
+    /** Return the machine configured by the configuration file NAME. */
+    static Machine loadConfig(String name) {
+        Main main = new Main();
+        main._configText = readFile(name);
+        return main.readConfig();
+    }
+
+    /** An instance used only to read a configuration. */
+    private Main() {
+    }
+
+    /** Read lines from _input, applying each setting line to MACHINE and
+     *  writing each converted message line to _output in groups of
+     *  five letters. */
+    private void streamMessages(Machine machine) throws IOException {
+        char[] buffer = new char[BUFFER_SIZE];
+        MessageStream stream = new MessageStream(machine);
+        for (int n = _input.read(buffer); n >= 0; n = _input.read(buffer)) {
+            for (int i = 0; i < n; i += 1) {
+                stream.accept(buffer[i]);
+            }
+        }
+        stream.finish();
+    }
+
+    /** Convert the input file _mapInput, mapped into memory a window at a
+     *  time and read as ASCII bytes, as for streamMessages, applying
+     *  setting lines to MACHINE. */
+    private void mapMessages(Machine machine) throws IOException {
+        for (int i = 0; i < _alphabet.size(); i += 1) {
+            if (_alphabet.toChar(i) >= ASCII_LIMIT) {
+                throw error("--mmap needs an ASCII alphabet");
+            }
+        }
+        MessageStream stream = new MessageStream(machine);
+        try (FileChannel in = FileChannel.open(_mapInput,
+                                               StandardOpenOption.READ)) {
+            long size = in.size();
+            for (long pos = 0; pos < size; pos += MAP_WINDOW) {
+                MappedByteBuffer window =
+                    in.map(FileChannel.MapMode.READ_ONLY, pos,
+                           Math.min(MAP_WINDOW, size - pos));
+                int limit = window.limit();
+                for (int i = 0; i < limit; i += 1) {
+                    byte b = window.get(i);
+                    if (b < 0) {
+                        throw error("non-ASCII input with --mmap");
+                    }
+                    stream.accept((char) b);
+                }
+            }
+        }
+        stream.finish();
+    }
+
+    /** The division of an input stream into setting lines, applied to a
+     *  machine, and message lines, converted and written to _output in
+     *  groups of five letters, fed one character at a time. */
+    private class MessageStream {
+
+        /** A stream whose settings are applied to MACHINE. */
+        MessageStream(Machine machine) {
+            _machine = machine;
+        }
+
+        /** Process the next input character, C.  A carriage return ends
+         *  a line, as does a newline not following one. */
+        void accept(char c) throws IOException {
+            if (_afterReturn) {
+                _afterReturn = false;
+                if (c == '\n') {
+                    return;
+                }
+            }
+            if (c == '\r') {
+                _afterReturn = true;
+                c = '\n';
+            }
+            if (_lineStart) {
+                _lineStart = false;
+                _settingLine = c == '*';
+                if (!_settingLine && !_configured) {
+                    throw error("should start with *");
+                }
+            }
+            if (c == '\n') {
+                if (_settingLine) {
+                    applySettings();
+                } else {
+                    _output.endLine();
+                }
+                _lineStart = true;
+            } else if (_settingLine) {
+                _settings.append(c);
+            } else if (c != ' ') {
+                _output.letter(_alphabet.toChar(
+                    _machine.convert(_alphabet.toInt(c))));
+                _converted += 1;
+            }
+        }
+
+        /** Finish the last line, which may lack a line terminator. */
+        void finish() throws IOException {
+            if (!_lineStart) {
+                if (_settingLine) {
+                    applySettings();
+                    return;
+                }
+                _output.endLine();
+            }
+            if (_configured) {
+                endSection(_machine, _start, _converted, _hits, _misses);
+            }
+        }
+
+        /** Apply the setting line just read, ending the current
+         *  section. */
+        private void applySettings() {
+            if (_configured) {
+                endSection(_machine, _start, _converted, _hits, _misses);
+            }
+            _start = Metrics.start();
+            _converted = 0;
+            _hits = _machine.pathCacheHits();
+            _misses = _machine.pathCacheMisses();
+            setUp(_machine, _settings.toString());
+            Metrics.settingLine();
+            _settings.setLength(0);
+            _configured = true;
+        }
+
+        /** Machine converting the messages. */
+        private final Machine _machine;
+
+        /** Setting line read so far. */
+        private final StringBuilder _settings = new StringBuilder();
+
+        /** True at the start of a line, within a setting line, once a
+         *  setting line has been applied, and just after a carriage
+         *  return. */
+        private boolean _lineStart = true, _settingLine, _configured,
+            _afterReturn;
+
+        /** Start time of the current section, characters converted in it,
+         *  and path cache hits and misses before it. */
+        private long _start, _converted, _hits, _misses;
+    }
+
+    /** Record in Metrics the end of a section begun at time START, when
+     *  M had had HITS path cache hits and MISSES misses, in which
+     *  CONVERTED characters were converted. */
+    private static void endSection(Machine M, long start, long converted,
+                                   long hits, long misses) {
+        Metrics.section(start, converted, M.pathCacheHits() - hits,
+                        M.pathCacheMisses() - misses);
+    }
+
+    /** Read the sections of _input, each a setting line and the message
+     *  lines after it, and convert them on _threads worker threads, each
+     *  setting up its own copy of TEMPLATE.  The results are written to
+     *  _output in input order. */
+    private void processSections(Machine template) throws IOException {
+        ExecutorService workers = Executors.newFixedThreadPool(_threads);
+        try {
+            SectionChunker chunker = new SectionChunker(
+                ThreadLocal.withInitial(template::copy), workers);
+            char[] buffer = new char[BUFFER_SIZE];
+            for (int n = _input.read(buffer); n >= 0;
+                 n = _input.read(buffer)) {
+                chunker.accept(buffer, n);
+            }
+            chunker.finish();
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    /** A piece of a section: some of its message text, every line of
+     *  which ends with a newline, to be converted by a machine set up
+     *  by the section's setting line and advanced past the letters of
+     *  the section before the piece. */
+    private static class Chunk {
+
+        /** A piece with setting line SETTINGS and text TEXT, preceded in
+         *  its section by SKIP letters, GROUP of them in the current
+         *  output group of TEXT's first line (0 if it starts a line).
+         *  LAST is true iff it is the last piece of its section. */
+        Chunk(String settings, String text, long skip, int group,
+              boolean last) {
+            this.settings = settings;
+            this.text = text;
+            this.skip = skip;
+            this.group = group;
+            this.last = last;
+        }
+
+        /** Setting line and text. */
+        final String settings, text;
+
+        /** Letters of the section before this piece. */
+        final long skip;
+
+        /** Letters already in the output group continued by the text. */
+        final int group;
+
+        /** True iff this is the last piece of its section. */
+        final boolean last;
+
+        /** Return the number of characters held for this piece. */
+        int size() {
+            return settings.length() + text.length() + 1;
+        }
+
+        /** Time taken to convert this piece, as given by
+         *  Metrics.elapsed(), letters converted, and path cache hits
+         *  and misses, set by convertChunk. */
+        long elapsed, converted, hits, misses;
+    }
+
+    /** The division of an input stream into sections, fed a buffer at a
+     *  time, and of each section into pieces of at most CHUNK_SIZE
+     *  characters.  Each piece is converted as a task on the workers, by
+     *  a machine advanced directly to the piece's first letter, and the
+     *  results are written to _output in order.  Pieces awaiting output
+     *  are bounded by their characters, not their number, so neither a
+     *  huge section nor a slow one holding up many finished ones makes
+     *  memory grow with the input. */
+    private class SectionChunker {
+
+        /** A chunker converting on WORKERS, with a machine from MACHINES
+         *  for each worker thread. */
+        SectionChunker(ThreadLocal<Machine> machines,
+                       ExecutorService workers) {
+            _machines = machines;
+            _workers = workers;
+        }
+
+        /** Process the next LEN input characters, in CHARS.  Runs of
+         *  message text within a line are copied whole. */
+        void accept(char[] chars, int len) throws IOException {
+            int i = 0;
+            while (i < len) {
+                int end = i;
+                if (!_lineStart && !_settingLine && !_afterReturn) {
+                    int limit = Math.min(len, i + CHUNK_SIZE - _text.length());
+                    long letters = 0;
+                    for (; end < limit; end += 1) {
+                        char c = chars[end];
+                        if (c == '\n' || c == '\r') {
+                            break;
+                        }
+                        if (c != ' ') {
+                            letters += 1;
+                        }
+                    }
+                    _text.append(chars, i, end - i);
+                    _letters += letters;
+                    _lineLetters += letters;
+                    if (_text.length() >= CHUNK_SIZE) {
+                        submit(false);
+                    }
+                }
+                if (end == i) {
+                    accept(chars[i]);
+                    end += 1;
+                }
+                i = end;
+            }
+        }
+
+        /** Process the next input character, C. */
+        void accept(char c) throws IOException {
+            if (_afterReturn) {
+                _afterReturn = false;
+                if (c == '\n') {
+                    return;
+                }
+            }
+            boolean lineEnd = c == '\n' || c == '\r';
+            _afterReturn = c == '\r';
+            if (_lineStart) {
+                _lineStart = false;
+                if (c == '*') {
+                    endSection();
+                    _settingLine = true;
+                } else if (_settings == null) {
+                    throw error("should start with *");
+                }
+            }
+            if (_settingLine) {
+                if (lineEnd) {
+                    startSection();
+                } else {
+                    _line.append(c);
+                }
+                return;
+            }
+            if (lineEnd) {
+                _text.append('\n');
+                _lineStart = true;
+                _lineLetters = 0;
+            } else {
+                _text.append(c);
+                if (c != ' ') {
+                    _lineLetters += 1;
+                    _letters += 1;
+                }
+            }
+            if (_text.length() >= CHUNK_SIZE) {
+                submit(false);
+            }
+        }
+
+        /** Finish the input, whose last line may lack a terminator, and
+         *  write all remaining output. */
+        void finish() throws IOException {
+            if (_settingLine) {
+                startSection();
+            } else if (!_lineStart) {
+                _text.append('\n');
+            }
+            endSection();
+            while (!_pending.isEmpty()) {
+                writeOldest();
+            }
+        }
+
+        /** Begin the section whose setting line has just been read. */
+        private void startSection() {
+            Metrics.settingLine();
+            _settings = _line.toString();
+            _line.setLength(0);
+            _settingLine = false;
+            _lineStart = true;
+            _letters = _skip = 0;
+            _lineLetters = _group = 0;
+        }
+
+        /** Submit the rest of the current section, if any. */
+        private void endSection() throws IOException {
+            if (_settings != null) {
+                submit(true);
+            }
+        }
+
+        /** Submit the text read since the last piece as a piece of the
+         *  current section, the last one iff LAST, first writing the
+         *  oldest pieces until there is room for it. */
+        private void submit(boolean last) throws IOException {
+            Chunk chunk = new Chunk(_settings, _text.toString(), _skip,
+                                    _group, last);
+            _text.setLength(0);
+            _skip = _letters;
+            _group = _lineLetters == 0 ? 0
+                : (int) ((_lineLetters - 1) % GROUP_SIZE) + 1;
+            int size = chunk.size();
+            while (!_pending.isEmpty()
+                   && _pendingSize + size
+                      > (long) PENDING_PER_THREAD * _threads) {
+                writeOldest();
+            }
+            _pending.add(_workers.submit(() ->
+                convertChunk(_machines.get(), chunk)));
+            _chunks.add(chunk);
+            _pendingSize += size;
+        }
+
+        /** Wait for the oldest piece awaiting output and write it,
+         *  recording its section in Metrics if it is the last piece. */
+        private void writeOldest() throws IOException {
+            _output.write(result(_pending.remove()));
+            Chunk chunk = _chunks.remove();
+            _pendingSize -= chunk.size();
+            _elapsed += chunk.elapsed;
+            _converted += chunk.converted;
+            _hits += chunk.hits;
+            _misses += chunk.misses;
+            if (chunk.last) {
+                Metrics.sectionTook(_elapsed, _converted, _hits, _misses);
+                _elapsed = _converted = _hits = _misses = 0;
+            }
+        }
+
+        /** Source of each worker's machine. */
+        private final ThreadLocal<Machine> _machines;
+
+        /** Threads converting pieces. */
+        private final ExecutorService _workers;
+
+        /** Output of the pieces awaiting it, oldest first. */
+        private final ArrayDeque<Future<String>> _pending =
+            new ArrayDeque<>();
+
+        /** The pieces whose output is in _pending. */
+        private final ArrayDeque<Chunk> _chunks = new ArrayDeque<>();
+
+        /** Total size of _chunks. */
+        private long _pendingSize;
+
+        /** Sums, over the pieces of the current section written so far,
+         *  of their conversion times, letters converted, and path cache
+         *  hits and misses. */
+        private long _elapsed, _converted, _hits, _misses;
+
+        /** Setting line being read, and text read since the last
+         *  piece. */
+        private final StringBuilder _line = new StringBuilder(),
+            _text = new StringBuilder();
+
+        /** Setting line of the current section, or null before the
+         *  first. */
+        private String _settings;
+
+        /** True at the start of a line, within a setting line, and just
+         *  after a carriage return (which ends a line, as does a newline
+         *  following it). */
+        private boolean _lineStart = true, _settingLine, _afterReturn;
+
+        /** Letters read in the current section and line, and in the
+         *  section before the current piece. */
+        private long _letters, _lineLetters, _skip;
+
+        /** Letters in the output group that the current piece
+         *  continues. */
+        private int _group;
+    }
+
+    /** Set up M according to CHUNK's setting line, advance it past the
+     *  letters of the section before CHUNK, and return the conversion of
+     *  CHUNK's text, recording its time and counts in CHUNK. */
+    private static String convertChunk(Machine M, Chunk chunk) {
+        long start = Metrics.start();
+        long hits = M.pathCacheHits(), misses = M.pathCacheMisses();
+        setUp(M, chunk.settings);
+        M.advanceBy(chunk.skip);
+        StringBuilder result =
+            new StringBuilder(chunk.text.length() * 2);
+        chunk.converted = convertLines(M, chunk.text, chunk.group, result);
+        chunk.hits = M.pathCacheHits() - hits;
+        chunk.misses = M.pathCacheMisses() - misses;
+        chunk.elapsed = Metrics.elapsed(start);
+        return result.toString();
+    }
+
+    /** Set up M according to SETTINGS and return the conversion of
+     *  MESSAGES, each grouped as for streamMessages and followed by a
+     *  line separator. */
+    static String convertSection(Machine M, String settings,
+                                 List<String> messages) {
+        long start = Metrics.start(), converted = 0;
+        long hits = M.pathCacheHits(), misses = M.pathCacheMisses();
+        setUp(M, settings);
+        Metrics.settingLine();
+        StringBuilder result = new StringBuilder();
+        for (String message : messages) {
+            converted += convertLines(M, message, 0, result);
+            result.append(System.lineSeparator());
+        }
+        endSection(M, start, converted, hits, misses);
+        return result.toString();
+    }
+
+    /** Append to RESULT the conversion by M of the letters of TEXT in
+     *  groups of GROUP_SIZE, of which the first already has GROUP
+     *  letters.  Each newline in TEXT ends a line, starting a new group;
+     *  blanks and carriage returns are skipped.  Return the number of
+     *  letters converted. */
+    private static long convertLines(Machine M, String text, int group,
+                                     StringBuilder result) {
+        Alphabet alphabet = M.alphabet();
+        long converted = 0;
+        for (int i = 0; i < text.length(); i += 1) {
+            char c = text.charAt(i);
+            if (c == '\n') {
+                result.append(System.lineSeparator());
+                group = 0;
+            } else if (c != ' ' && c != '\r') {
+                if (group == GROUP_SIZE) {
+                    result.append(' ');
+                    group = 0;
+                }
+                result.append(alphabet.toChar(
+                    M.convert(alphabet.toInt(c))));
+                group += 1;
+                converted += 1;
+            }
+        }
+        return converted;
+    }
+
+    /** Return the value of SECTION, waiting for it if necessary and
+     *  rethrowing any error it raised. */
+    private static String result(Future<String> section) {
+        try {
+            return section.get();
+        } catch (ExecutionException excp) {
+            if (excp.getCause() instanceof EnigmaException) {
+                throw (EnigmaException) excp.getCause();
+            }
+            throw error("section failed: %s", excp.getCause());
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            throw error("interrupted");
+        }
+    }
+
+    /** Return an Enigma machine configured from the contents of the
+     *  configuration file, taken from _configCache if that was compiled
+     *  from the same contents.  Otherwise the contents are parsed and,
+     *  if there is a _configCache, compiled into it for later runs.  A
+     *  cache that cannot be written is not an error. */
+    private Machine readConfig() {
+        long start = Metrics.start();
+        long fingerprint = CompiledConfig.fingerprint(_configText);
+        if (_configCache != null) {
+            try {
+                Machine machine = CompiledConfig.load(_configCache,
+                                                      fingerprint);
+                if (machine != null) {
+                    _alphabet = machine.alphabet();
+                    Metrics.configRead(start, true);
+                    return machine;
+                }
+            } catch (IOException excp) {
+                /* Fall back to parsing the configuration. */
+            }
+        }
+        _config = new Scanner(new String(_configText));
+        Machine machine = parseConfig();
+        Metrics.configRead(start, false);
+        if (_configCache != null) {
+            try {
+                CompiledConfig.save(machine, fingerprint, _configCache);
+            } catch (IOException excp) {
+                /* Parse again next time. */
+            }
+        }
+        return machine;
+    }
+
     /** Return an Enigma machine configured from the contents of configuration
      *  file _config. */
-    private Machine readConfig() {
+    private Machine parseConfig() {
         try {
             String newAplh = _config.next();
             if (newAplh.contains("*")
@@ -164,7 +992,7 @@ public final class Main {
 
     /** Set M according to the specification given on SETTINGS,
      *  which must have the format specified in the assignment. */
-    private void setUp(Machine M, String settings) {
+    static void setUp(Machine M, String settings) {
         String[] newsettingArr = settings.split(" ");
         if (newsettingArr.length - 1 < M.numRotors()) {
             throw new EnigmaException("Doesnt match description");
@@ -191,23 +1019,11 @@ public final class Main {
             for (int i = M.numRotors() + 2; i < newsettingArr.length; i++) {
                 newcycles += newsettingArr[i];
             }
-            Permutation q  = new Permutation(newcycles, _alphabet);
+            Permutation q = PermutationCache.SHARED.get(newcycles,
+                                                        M.alphabet());
             M.setPlugboard(q);
             M.insertRotors(newrotors);
             M.setRotors(newsettingArr[M.numRotors() + 1]);
         }
     }
-
-    /** Print MSG in groups of five (except that the last group may
-     *  have fewer letters). */
-    private void printMessageLine(String msg) {
-        msg = msg.replace(" ", "");
-        String newmessage = "";
-        while (msg.length() > 5) {
-            newmessage += msg.substring(0, 5) + " ";
-            msg = msg.substring(5);
-        }
-        newmessage += msg;
-        _output.println(newmessage);
-    }
 }
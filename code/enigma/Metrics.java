@@ -0,0 +1,299 @@
+package enigma;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/** Counters and histograms of the work done by this program, off by
+ *  default.  Until enable() is called, and while no Flight Recorder
+ *  recording has been started, every recording method returns after
+ *  reading a field or two, without reading the clock or allocating, and
+ *  none is called per character: callers count characters and cache
+ *  hits locally and record them once per section or configuration.
+ *  Once enabled, the figures are published over JMX (see MetricsMXBean)
+ *  and summarized by summary().
+ *
+ *  Configuration reads and sections are also reported as the Flight
+ *  Recorder events enigma.ConfigRead and enigma.Section whenever a
+ *  recording that includes them is running, whether or not the
+ *  counters are enabled.
+ *  @author Krish Rambhiya
+ */
+final class Metrics implements MetricsMXBean {
+
+    /** The only instance, registered with JMX. */
+    private Metrics() {
+    }
+
+    /** Return true iff the counters are enabled. */
+    static boolean enabled() {
+        return _enabled;
+    }
+
+    /** Enable the counters and register them with the platform MBean
+     *  server, if that has not been done. */
+    static synchronized void enable() {
+        if (_enabled) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(
+                INSTANCE, new ObjectName(OBJECT_NAME));
+        } catch (JMException excp) {
+            /* Count without publishing. */
+        }
+        _enabled = true;
+    }
+
+    /** Return the time, as given by System.nanoTime(), to pass as the
+     *  START of section() or configRead() when the work they record
+     *  begins, or 0 if neither the counters are enabled nor a Flight
+     *  Recorder recording has been started, in which case those calls
+     *  record nothing. */
+    static long start() {
+        if (_enabled || FlightRecorder.isInitialized()) {
+            return System.nanoTime();
+        }
+        return 0;
+    }
+
+    /** Record that a setting line was applied. */
+    static void settingLine() {
+        if (_enabled) {
+            INSTANCE._settingLines.increment();
+        }
+    }
+
+    /** Record that a configuration was read, starting at time START (as
+     *  given by start()), from a compiled configuration cache iff
+     *  CACHED. */
+    static void configRead(long start, boolean cached) {
+        if (start == 0) {
+            return;
+        }
+        boolean event = FlightRecorder.isInitialized()
+            && Events.CONFIG_READ.isEnabled();
+        if (!_enabled && !event) {
+            return;
+        }
+        long elapsed = System.nanoTime() - start;
+        if (_enabled) {
+            INSTANCE._configReads.increment();
+            if (cached) {
+                INSTANCE._configCacheHits.increment();
+            }
+            INSTANCE._configTimes.record(elapsed);
+        }
+        if (event) {
+            ConfigReadEvent read = new ConfigReadEvent();
+            if (read.shouldCommit()) {
+                read.cached = cached;
+                read.elapsed = elapsed;
+                read.commit();
+            }
+        }
+    }
+
+    /** Record that a section of CHARACTERS message characters was
+     *  converted, starting at time START (as given by start()), with
+     *  HITS conversions found in the machine's path cache and MISSES
+     *  not. */
+    static void section(long start, long characters, long hits,
+                        long misses) {
+        if (start != 0 && (_enabled || sectionEvents())) {
+            sectionTook(System.nanoTime() - start, characters, hits,
+                        misses);
+        }
+    }
+
+    /** Return the time since START, as given by start(), or 0 if START
+     *  is 0. */
+    static long elapsed(long start) {
+        return start == 0 ? 0 : System.nanoTime() - start;
+    }
+
+    /** Record, as for section(), that a section was converted in
+     *  ELAPSED nanoseconds in all, for a section converted in pieces
+     *  whose times, characters and path cache hits and misses have been
+     *  summed. */
+    static void sectionTook(long elapsed, long characters, long hits,
+                            long misses) {
+        if (_enabled) {
+            INSTANCE._sections.increment();
+            INSTANCE._characters.add(characters);
+            INSTANCE._pathCacheHits.add(hits);
+            INSTANCE._pathCacheMisses.add(misses);
+            INSTANCE._sectionTimes.record(elapsed);
+        }
+        if (sectionEvents()) {
+            SectionEvent section = new SectionEvent();
+            if (section.shouldCommit()) {
+                section.characters = characters;
+                section.elapsed = elapsed;
+                section.commit();
+            }
+        }
+    }
+
+    /** Return true iff a recording includes enigma.Section events. */
+    private static boolean sectionEvents() {
+        return FlightRecorder.isInitialized() && Events.SECTION.isEnabled();
+    }
+
+    /** Record that a permutation built a table of conjugates. */
+    static void conjugateTable() {
+        if (_enabled) {
+            INSTANCE._conjugateTables.increment();
+        }
+    }
+
+    /** Return a summary of the counters, one figure per line. */
+    static String summary() {
+        Metrics m = INSTANCE;
+        return String.format("characters      %d%n"
+                             + "setting lines   %d%n"
+                             + "sections        %d  %s%n"
+                             + "config reads    %d (%d cached)  %s%n"
+                             + "path cache      %d hits, %d misses%n"
+                             + "rotor tables    %d%n",
+                             m.getCharacters(), m.getSettingLines(),
+                             m.getSections(), m._sectionTimes.summary(),
+                             m.getConfigReads(), m.getConfigCacheHits(),
+                             m._configTimes.summary(), m.getPathCacheHits(),
+                             m.getPathCacheMisses(), m.getConjugateTables());
+    }
+
+    @Override
+    public long getCharacters() {
+        return _characters.sum();
+    }
+
+    @Override
+    public long getSettingLines() {
+        return _settingLines.sum();
+    }
+
+    @Override
+    public long getSections() {
+        return _sections.sum();
+    }
+
+    @Override
+    public double getSectionLatencyP50() {
+        return _sectionTimes.percentile(0.5) / 1e3;
+    }
+
+    @Override
+    public double getSectionLatencyP99() {
+        return _sectionTimes.percentile(0.99) / 1e3;
+    }
+
+    @Override
+    public long getConfigReads() {
+        return _configReads.sum();
+    }
+
+    @Override
+    public long getConfigCacheHits() {
+        return _configCacheHits.sum();
+    }
+
+    @Override
+    public double getConfigReadP50() {
+        return _configTimes.percentile(0.5) / 1e3;
+    }
+
+    @Override
+    public long getPathCacheHits() {
+        return _pathCacheHits.sum();
+    }
+
+    @Override
+    public long getPathCacheMisses() {
+        return _pathCacheMisses.sum();
+    }
+
+    @Override
+    public long getConjugateTables() {
+        return _conjugateTables.sum();
+    }
+
+    /** Flight Recorder event for a configuration read. */
+    @Name("enigma.ConfigRead")
+    @Label("Configuration Read")
+    @Category("Enigma")
+    static final class ConfigReadEvent extends Event {
+
+        /** Whether the configuration came from a compiled cache. */
+        @Label("Cached")
+        boolean cached;
+
+        /** Time taken. */
+        @Label("Elapsed")
+        @Timespan(Timespan.NANOSECONDS)
+        long elapsed;
+    }
+
+    /** Flight Recorder event for a converted section. */
+    @Name("enigma.Section")
+    @Label("Section")
+    @Category("Enigma")
+    @Description("A setting line and the messages converted after it")
+    static final class SectionEvent extends Event {
+
+        /** Message characters converted. */
+        @Label("Characters")
+        long characters;
+
+        /** Time taken. */
+        @Label("Elapsed")
+        @Timespan(Timespan.NANOSECONDS)
+        long elapsed;
+    }
+
+    /** The types of my events, looked up only once a recording has
+     *  been started, since looking them up starts the Flight
+     *  Recorder's machinery. */
+    private static final class Events {
+
+        /** Type of ConfigReadEvent. */
+        static final EventType CONFIG_READ =
+            EventType.getEventType(ConfigReadEvent.class);
+
+        /** Type of SectionEvent. */
+        static final EventType SECTION =
+            EventType.getEventType(SectionEvent.class);
+    }
+
+    /** Name under which the counters are registered with JMX. */
+    static final String OBJECT_NAME = "enigma:type=Metrics";
+
+    /** The counters. */
+    private static final Metrics INSTANCE = new Metrics();
+
+    /** True iff the counters are enabled. */
+    private static volatile boolean _enabled;
+
+    /** Counts of events. */
+    private final LongAdder _characters = new LongAdder(),
+        _settingLines = new LongAdder(), _sections = new LongAdder(),
+        _configReads = new LongAdder(), _configCacheHits = new LongAdder(),
+        _pathCacheHits = new LongAdder(), _pathCacheMisses = new LongAdder(),
+        _conjugateTables = new LongAdder();
+
+    /** Times taken to convert sections and to read configurations. */
+    private final LatencyHistogram _sectionTimes = new LatencyHistogram(),
+        _configTimes = new LatencyHistogram();
+
+}
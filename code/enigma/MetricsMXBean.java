@@ -0,0 +1,48 @@
+package enigma;
+
+/** The management interface of Metrics, through which its counters and
+ *  histograms are published over JMX as "enigma:type=Metrics".  Times
+ *  are in microseconds.
+ *  @author Krish Rambhiya
+ */
+public interface MetricsMXBean {
+
+    /** Return the number of message characters converted. */
+    long getCharacters();
+
+    /** Return the number of setting lines applied. */
+    long getSettingLines();
+
+    /** Return the number of sections (a setting line and the messages
+     *  after it) converted. */
+    long getSections();
+
+    /** Return the median time to convert a section. */
+    double getSectionLatencyP50();
+
+    /** Return the 99th percentile of the time to convert a section. */
+    double getSectionLatencyP99();
+
+    /** Return the number of configurations read. */
+    long getConfigReads();
+
+    /** Return the number of configurations taken from a compiled
+     *  configuration cache rather than parsed. */
+    long getConfigCacheHits();
+
+    /** Return the median time to read a configuration. */
+    double getConfigReadP50();
+
+    /** Return the number of conversions found in machines' path
+     *  caches. */
+    long getPathCacheHits();
+
+    /** Return the number of conversions not found in machines' path
+     *  caches. */
+    long getPathCacheMisses();
+
+    /** Return the number of rotor conjugate tables built by
+     *  permutations. */
+    long getConjugateTables();
+
+}
@@ -0,0 +1,51 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/** The suite of all JUnit tests for the Metrics class.
+ *  @author
+ */
+public class MetricsTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    @Test
+    public void testCounts() throws JMException {
+        if (!Metrics.enabled()) {
+            assertEquals(0, Metrics.start());
+        }
+        Metrics.enable();
+        assertTrue(Metrics.start() != 0);
+        assertTrue(Metrics.enabled());
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(Metrics.OBJECT_NAME);
+        long chars = (Long) server.getAttribute(name, "Characters");
+        long lines = (Long) server.getAttribute(name, "SettingLines");
+        long sections = (Long) server.getAttribute(name, "Sections");
+        Machine M = MachineTest.navalMachine(MachineTest.ROTORS, "AAAA", "");
+        String out = Main.convertSection(M, "* B Beta I II III AAAA (AQ) (EP)",
+                                         Arrays.asList("HELLO WORLD"));
+        assertEquals("IHBDQ QMTQZ" + System.lineSeparator(), out);
+        assertEquals(chars + 10,
+                     (long) (Long) server.getAttribute(name, "Characters"));
+        assertEquals(lines + 1,
+                     (long) (Long) server.getAttribute(name,
+                                                       "SettingLines"));
+        assertEquals(sections + 1,
+                     (long) (Long) server.getAttribute(name, "Sections"));
+        assertTrue(Metrics.summary().contains("characters"));
+    }
+
+}
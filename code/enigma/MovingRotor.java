@@ -9,11 +9,16 @@ class MovingRotor extends Rotor {
     /** A rotor named NAME whose permutation in its default setting is
      *  PERM, and whose notches are at the positions indicated in NOTCHES.
      *  The Rotor is initally in its 0 setting (first character of its
-     *  alphabet).
+     *  alphabet).  The notches are compiled into a table indexed by
+     *  position.
      */
     MovingRotor(String name, Permutation perm, String notches) {
         super(name, perm);
         _notches = notches;
+        _notchTable = new boolean[perm.size()];
+        for (int i = 0; i < notches.length(); i += 1) {
+            _notchTable[alphabet().toInt(notches.charAt(i))] = true;
+        }
     }
 
     @Override
@@ -27,15 +32,20 @@ class MovingRotor extends Rotor {
     }
 
     @Override
-    boolean atNotch() {
-        for (int i = 0; i < _notches.length(); i++) {
-            if (alphabet().toInt(_notches.charAt(i)) == this.setting()) {
-                return true;
-            }
-        }
-        return false;
+    MovingRotor copy() {
+        MovingRotor result = new MovingRotor(name(), permutation(), _notches);
+        result.set(setting());
+        return result;
+    }
+
+    @Override
+    boolean notchAt(int posn) {
+        return _notchTable[posn];
     }
 
     /** Notches of rotor.*/
     private String _notches;
+
+    /** Whether each position is at a notch. */
+    private final boolean[] _notchTable;
 }
@@ -90,4 +90,31 @@ public class MovingRotorTest {
         temp1.set(2);
         assertEquals(0, temp1.convertBackward(1));
     }
+
+    @Test
+    public void checkSettingWrapsToAlphabetSize() {
+        Rotor temp1 = new Rotor("newRotor",
+                new Permutation("(BACD)", new Alphabet("ABCD")));
+        temp1.set(5);
+        assertEquals(1, temp1.setting());
+        assertEquals(3, temp1.convertForward(0));
+        temp1.set(-2);
+        assertEquals(2, temp1.setting());
+        assertEquals(3, temp1.convertForward(1));
+    }
+
+    @Test
+    public void checkTablesMatchArithmetic() {
+        Permutation perm = new Permutation(NAVALA.get("V"), UPPER);
+        Rotor temp1 = new Rotor("V", perm);
+        for (int s = 0; s < UPPER.size(); s += 1) {
+            temp1.set(s);
+            for (int p = 0; p < UPPER.size(); p += 1) {
+                assertEquals(perm.wrap(perm.permute(p + s) - s),
+                             temp1.convertForward(p));
+                assertEquals(perm.wrap(perm.invert(p + s) - s),
+                             temp1.convertBackward(p));
+            }
+        }
+    }
 }
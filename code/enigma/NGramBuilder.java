@@ -0,0 +1,56 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import static enigma.EnigmaException.*;
+
+/** Builds an n-gram table file, for NGramTable.map, from a plaintext
+ *  corpus read in a single streaming pass.
+ *  @author Krish Rambhiya
+ */
+public final class NGramBuilder {
+
+    /** Build a table as specified by ARGS, which are
+     *      N CORPUS OUTPUT [ALPHABET]
+     *  where N is the n-gram length, CORPUS names a UTF-8 text file,
+     *  OUTPUT names the table file to write, and ALPHABET, by default the
+     *  upper-case letters, lists the characters counted.  Other
+     *  characters of CORPUS are skipped, so a corpus in lower case should
+     *  be given a lower-case ALPHABET.  Exits with code 1 on error. */
+    public static void main(String... args) {
+        try {
+            build(args);
+            return;
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** Build the table specified by ARGS (see comment on main). */
+    private static void build(String[] args) {
+        if (args.length < 3 || args.length > 4) {
+            throw error("usage: N CORPUS OUTPUT [ALPHABET]");
+        }
+        int n;
+        try {
+            n = Integer.parseInt(args[0]);
+        } catch (NumberFormatException excp) {
+            throw error("bad n-gram length: %s", args[0]);
+        }
+        Alphabet alphabet =
+            args.length > 3 ? new Alphabet(args[3]) : new Alphabet();
+        try (Reader corpus = Files.newBufferedReader(Paths.get(args[1]),
+                                                     StandardCharsets.UTF_8)) {
+            NGramTable.fromReader(alphabet, n, corpus)
+                .save(Paths.get(args[2]));
+        } catch (IOException excp) {
+            throw error("I/O error: %s", excp.getMessage());
+        }
+    }
+
+}
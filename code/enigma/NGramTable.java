@@ -0,0 +1,274 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static enigma.EnigmaException.*;
+
+/** A table of the log probabilities of the n-grams (sequences of N
+ *  characters) of an alphabet, used to score candidate decryptions.  The
+ *  table is a flat array indexed by each n-gram read as a number in base
+ *  alphabet size, first character most significant.
+ *
+ *  A table may be saved in a binary file and later mapped into memory
+ *  read-only, so that every thread and process using the file shares
+ *  one copy in the page cache.  The file, in little-endian byte order,
+ *  holds
+ *      the four bytes "NGRM", the format version (int), N (int), the
+ *      alphabet size (int), the alphabet's characters (UTF-16 units),
+ *      zero padding to a multiple of 8 bytes, and then the log
+ *      probabilities (floats) in index order.
+ *  @author Krish Rambhiya
+ */
+class NGramTable {
+
+    /** A table of n-grams of length N over ALPHABET with base-10 log
+     *  probabilities LOGPROBS, which must have ALPHABET.size() ** N
+     *  elements. */
+    NGramTable(Alphabet alphabet, int n, float[] logProbs) {
+        this(alphabet, n, FloatBuffer.wrap(logProbs));
+    }
+
+    /** A table of n-grams of length N over ALPHABET whose base-10 log
+     *  probabilities are the contents of LOGPROBS, which must have
+     *  ALPHABET.size() ** N elements remaining. */
+    private NGramTable(Alphabet alphabet, int n, FloatBuffer logProbs) {
+        if (n < 1) {
+            throw error("n-gram length must be positive");
+        }
+        if (Math.pow(alphabet.size(), n) != logProbs.remaining()) {
+            throw error("%d-gram table over %d characters must have %.0f"
+                        + " entries", n, alphabet.size(),
+                        Math.pow(alphabet.size(), n));
+        }
+        _alphabet = alphabet;
+        _n = n;
+        _logProbs = logProbs.slice();
+        _high = (int) Math.pow(alphabet.size(), n - 1);
+    }
+
+    /** Return the table of n-grams of length N over ALPHABET estimated
+     *  from TEXT.  Characters of TEXT not in ALPHABET are skipped.
+     *  N-grams that never occur are given a probability of a hundredth
+     *  of one occurrence. */
+    static NGramTable fromText(Alphabet alphabet, int n, CharSequence text) {
+        Counter counter = new Counter(alphabet, n);
+        for (int i = 0; i < text.length(); i += 1) {
+            counter.add(text.charAt(i));
+        }
+        return counter.table();
+    }
+
+    /** Return the table of n-grams of length N over ALPHABET estimated,
+     *  as for fromText, from the text read from INPUT in one pass. */
+    static NGramTable fromReader(Alphabet alphabet, int n, Reader input)
+        throws IOException {
+        Counter counter = new Counter(alphabet, n);
+        char[] buffer = new char[1 << 16];
+        for (int k = input.read(buffer); k >= 0; k = input.read(buffer)) {
+            for (int i = 0; i < k; i += 1) {
+                counter.add(buffer[i]);
+            }
+        }
+        return counter.table();
+    }
+
+    /** Accumulates the n-gram counts of a text. */
+    private static class Counter {
+
+        /** A counter of n-grams of length N over ALPHABET. */
+        Counter(Alphabet alphabet, int n) {
+            double entries = Math.pow(alphabet.size(), n);
+            if (n < 1 || entries > Integer.MAX_VALUE) {
+                throw error("cannot tabulate %d-grams of %d characters", n,
+                            alphabet.size());
+            }
+            _alphabet = alphabet;
+            _n = n;
+            _counts = new long[(int) entries];
+            _high = (int) Math.pow(alphabet.size(), n - 1);
+        }
+
+        /** Count the n-gram ending at C, skipping C if it is not in my
+         *  alphabet. */
+        void add(char c) {
+            if (!_alphabet.contains(c)) {
+                return;
+            }
+            _index = (_index % _high) * _alphabet.size()
+                + _alphabet.toInt(c);
+            _filled = Math.min(_filled + 1, _n);
+            if (_filled == _n) {
+                _counts[_index] += 1;
+                _total += 1;
+            }
+        }
+
+        /** Return the table of the n-grams counted so far. */
+        NGramTable table() {
+            if (_total == 0) {
+                throw error("no %d-grams in text", _n);
+            }
+            float[] logProbs = new float[_counts.length];
+            for (int i = 0; i < _counts.length; i += 1) {
+                double count = _counts[i] == 0 ? 0.01 : _counts[i];
+                logProbs[i] = (float) Math.log10(count / _total);
+            }
+            return new NGramTable(_alphabet, _n, logProbs);
+        }
+
+        /** Alphabet counted. */
+        private final Alphabet _alphabet;
+
+        /** Length of the n-grams. */
+        private final int _n;
+
+        /** Size of the alphabet to the power _n - 1. */
+        private final int _high;
+
+        /** Occurrences of each n-gram. */
+        private final long[] _counts;
+
+        /** Index of the latest n-gram and number of characters seen, up
+         *  to _n. */
+        private int _index, _filled;
+
+        /** Total n-grams counted. */
+        private long _total;
+    }
+
+    /** Write this table to the file FILE in the format described
+     *  above. */
+    void save(Path file) throws IOException {
+        int size = _alphabet.size();
+        ByteBuffer header = ByteBuffer.allocate(headerLength(size))
+            .order(ByteOrder.LITTLE_ENDIAN);
+        header.put(MAGIC).putInt(VERSION).putInt(_n).putInt(size);
+        for (int i = 0; i < size; i += 1) {
+            header.putChar(_alphabet.toChar(i));
+        }
+        header.position(header.capacity()).flip();
+        ByteBuffer body = ByteBuffer.allocate(4 * _logProbs.capacity())
+            .order(ByteOrder.LITTLE_ENDIAN);
+        body.asFloatBuffer().put(_logProbs.duplicate().clear());
+        try (FileChannel out = FileChannel.open(file,
+                 StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                 StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (header.hasRemaining()) {
+                out.write(header);
+            }
+            while (body.hasRemaining()) {
+                out.write(body);
+            }
+        }
+    }
+
+    /** Return the table in FILE, written by save, mapped into memory
+     *  read-only rather than read onto the heap. */
+    static NGramTable map(Path file) throws IOException {
+        MappedByteBuffer data;
+        try (FileChannel in = FileChannel.open(file,
+                                               StandardOpenOption.READ)) {
+            data = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+        }
+        data.order(ByteOrder.LITTLE_ENDIAN);
+        byte[] magic = new byte[MAGIC.length];
+        if (data.remaining() < FIXED_HEADER) {
+            throw error("%s is not an n-gram table", file);
+        }
+        data.get(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw error("%s is not an n-gram table", file);
+        }
+        int version = data.getInt(), n = data.getInt(), size = data.getInt();
+        if (version != VERSION) {
+            throw error("%s has unsupported n-gram table version %d", file,
+                        version);
+        }
+        if (size <= 0 || data.remaining() < 2L * size) {
+            throw error("%s is truncated", file);
+        }
+        char[] chars = new char[size];
+        for (int i = 0; i < size; i += 1) {
+            chars[i] = data.getChar();
+        }
+        data.position(headerLength(size));
+        FloatBuffer logProbs = data.slice().order(ByteOrder.LITTLE_ENDIAN)
+            .asFloatBuffer();
+        if (Math.pow(size, n) != logProbs.remaining()) {
+            throw error("%s is truncated", file);
+        }
+        return new NGramTable(new Alphabet(new String(chars)), n, logProbs);
+    }
+
+    /** Return the length of the header of a file holding a table over
+     *  an alphabet of SIZE characters. */
+    private static int headerLength(int size) {
+        return (FIXED_HEADER + 2 * size + 7) & ~7;
+    }
+
+    /** Return the alphabet of this table. */
+    Alphabet alphabet() {
+        return _alphabet;
+    }
+
+    /** Return the length of my n-grams. */
+    int n() {
+        return _n;
+    }
+
+    /** Return the log probability of the n-gram with index INDEX. */
+    float logProb(int index) {
+        return _logProbs.get(index);
+    }
+
+    /** Return the sum of the log probabilities of the n-grams in the
+     *  first LEN alphabet indices of TEXT.  Allocates nothing. */
+    double score(int[] text, int len) {
+        if (len < _n) {
+            return 0;
+        }
+        int size = _alphabet.size();
+        int index = 0;
+        for (int i = 0; i < _n - 1; i += 1) {
+            index = index * size + text[i];
+        }
+        double score = 0;
+        for (int i = _n - 1; i < len; i += 1) {
+            index = (index % _high) * size + text[i];
+            score += _logProbs.get(index);
+        }
+        return score;
+    }
+
+    /** Alphabet of the n-grams. */
+    private final Alphabet _alphabet;
+
+    /** Length of the n-grams. */
+    private final int _n;
+
+    /** Size of the alphabet to the power _n - 1. */
+    private final int _high;
+
+    /** Log probability of each n-gram, on the heap or mapped from a
+     *  file. */
+    private final FloatBuffer _logProbs;
+
+    /** First bytes of a table file. */
+    private static final byte[] MAGIC = { 'N', 'G', 'R', 'M' };
+
+    /** Version of the table file format. */
+    private static final int VERSION = 1;
+
+    /** Length of the magic number, version, N and alphabet size. */
+    private static final int FIXED_HEADER = 16;
+
+}
@@ -0,0 +1,182 @@
+package enigma;
+
+import java.util.Arrays;
+
+import static enigma.EnigmaException.*;
+
+/** A bounded cache of composed substitution tables, keyed by a machine's
+ *  stepping state and evicting the least recently used entry when full.
+ *  Each table maps an input index to its image through the rotors and
+ *  reflector (not the plugboard, which the machine applies around the
+ *  lookup), with -1 marking entries not yet computed.  Evicted tables
+ *  are reused, so that a full cache allocates nothing.
+ *  @author Krish Rambhiya
+ */
+class PathCache {
+
+    /** A cache holding at most CAPACITY tables, each of SIZE entries. */
+    PathCache(int capacity, int size) {
+        if (capacity <= 0) {
+            throw error("path cache capacity must be positive");
+        }
+        _size = size;
+        _keys = new long[capacity];
+        _tables = new int[capacity][];
+        _chain = new int[capacity];
+        _older = new int[capacity];
+        _newer = new int[capacity];
+        _buckets = new int[Integer.highestOneBit(capacity) * 2];
+        Arrays.fill(_buckets, NONE);
+        _oldest = _newest = NONE;
+    }
+
+    /** Return the capacity of this cache. */
+    int capacity() {
+        return _keys.length;
+    }
+
+    /** Return the number of tables currently cached. */
+    int count() {
+        return _count;
+    }
+
+    /** Return the number of lookups that found their state. */
+    long hits() {
+        return _hits;
+    }
+
+    /** Return the number of lookups that had to add their state. */
+    long misses() {
+        return _misses;
+    }
+
+    /** Discard every cached table, keeping the hit and miss counts.
+     *  Only the buckets of the tables in use are reset when they are few,
+     *  so clearing a lightly used cache is cheap. */
+    void clear() {
+        if (_count < _buckets.length / 4) {
+            for (int e = 0; e < _count; e += 1) {
+                _buckets[bucket(_keys[e])] = NONE;
+            }
+        } else {
+            Arrays.fill(_buckets, NONE);
+        }
+        _count = 0;
+        _oldest = _newest = NONE;
+    }
+
+    /** Return the table for STATE, marking it most recently used.  If
+     *  STATE is not cached, add a table for it whose entries are all -1,
+     *  evicting the least recently used table if necessary. */
+    int[] lookup(long state) {
+        int bucket = bucket(state);
+        for (int e = _buckets[bucket]; e != NONE; e = _chain[e]) {
+            if (_keys[e] == state) {
+                _hits += 1;
+                unlink(e);
+                pushNewest(e);
+                return _tables[e];
+            }
+        }
+        _misses += 1;
+        int e;
+        if (_count < capacity()) {
+            e = _count;
+            _count += 1;
+            if (_tables[e] == null) {
+                _tables[e] = new int[_size];
+            }
+        } else {
+            e = _oldest;
+            unlink(e);
+            removeFromBucket(e);
+        }
+        _keys[e] = state;
+        Arrays.fill(_tables[e], -1);
+        _chain[e] = _buckets[bucket];
+        _buckets[bucket] = e;
+        pushNewest(e);
+        return _tables[e];
+    }
+
+    /** Return the hash bucket of STATE. */
+    private int bucket(long state) {
+        long h = state * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32) & (_buckets.length - 1);
+    }
+
+    /** Remove entry E from its hash chain. */
+    private void removeFromBucket(int e) {
+        int bucket = bucket(_keys[e]);
+        if (_buckets[bucket] == e) {
+            _buckets[bucket] = _chain[e];
+            return;
+        }
+        for (int p = _buckets[bucket]; p != NONE; p = _chain[p]) {
+            if (_chain[p] == e) {
+                _chain[p] = _chain[e];
+                return;
+            }
+        }
+    }
+
+    /** Remove entry E from the recency list. */
+    private void unlink(int e) {
+        if (_older[e] == NONE) {
+            _oldest = _newer[e];
+        } else {
+            _newer[_older[e]] = _newer[e];
+        }
+        if (_newer[e] == NONE) {
+            _newest = _older[e];
+        } else {
+            _older[_newer[e]] = _older[e];
+        }
+    }
+
+    /** Add entry E to the recency list as the most recently used. */
+    private void pushNewest(int e) {
+        _older[e] = _newest;
+        _newer[e] = NONE;
+        if (_newest == NONE) {
+            _oldest = e;
+        } else {
+            _newer[_newest] = e;
+        }
+        _newest = e;
+    }
+
+    /** Marks the absence of an entry in links and buckets. */
+    private static final int NONE = -1;
+
+    /** Number of entries in each table. */
+    private final int _size;
+
+    /** Stepping state of each entry. */
+    private final long[] _keys;
+
+    /** Substitution table of each entry. */
+    private final int[][] _tables;
+
+    /** Next entry in the same hash bucket, or NONE. */
+    private final int[] _chain;
+
+    /** Next less recently used entry, or NONE. */
+    private final int[] _older;
+
+    /** Next more recently used entry, or NONE. */
+    private final int[] _newer;
+
+    /** First entry in each hash bucket, or NONE. */
+    private final int[] _buckets;
+
+    /** Number of entries in use. */
+    private int _count;
+
+    /** Least and most recently used entries, or NONE. */
+    private int _oldest, _newest;
+
+    /** Lookup statistics. */
+    private long _hits, _misses;
+
+}
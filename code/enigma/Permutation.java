@@ -1,6 +1,6 @@
 package enigma;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 
 /** Represents a permutation of a range of integers starting at 0 corresponding
  *  to the characters of an alphabet.
@@ -12,34 +12,64 @@ class Permutation {
      *  form "(cccc) (cc) ..." where the c's are characters in ALPHABET, which
      *  is interpreted as a permutation in cycle notation.  Characters in the
      *  alphabet that are not included in any cycle map to themselves.
-     *  Whitespace is ignored. */
+     *  Whitespace is ignored.  The cycles are compiled once here into
+     *  forward and inverse index tables, so that permute and invert
+     *  are single array reads. */
     Permutation(String cycles, Alphabet alphabet) {
         _alphabet = alphabet;
-        String newtemporaryCycle = cycles.replace("(", "");
-        ArrayList<ArrayList<Character>> newBuildCycle = new ArrayList<>();
-        ArrayList<Character> newCurrentCycle = new ArrayList<>();
-        for (int i = 0; i < newtemporaryCycle.length(); i++) {
-            char newCurrentChar = newtemporaryCycle.charAt(i);
-            if (newCurrentChar == ' ') {
+        _forward = new int[alphabet.size()];
+        _inverse = new int[alphabet.size()];
+        for (int i = 0; i < _forward.length; i += 1) {
+            _forward[i] = i;
+            _inverse[i] = i;
+        }
+        StringBuilder newCurrentCycle = new StringBuilder();
+        for (int i = 0; i < cycles.length(); i++) {
+            char newCurrentChar = cycles.charAt(i);
+            if (newCurrentChar == '('
+                    || Character.isWhitespace(newCurrentChar)) {
                 continue;
-            } else if (!(newCurrentChar == ')')) {
-                newCurrentCycle.add(newCurrentChar);
             } else if (newCurrentChar == ')') {
-                newBuildCycle.add(newCurrentCycle);
-                newCurrentCycle = new ArrayList<>();
+                addCycle(newCurrentCycle.toString());
+                newCurrentCycle.setLength(0);
+            } else {
+                newCurrentCycle.append(newCurrentChar);
             }
         }
-        _cycleset = newBuildCycle;
+        _fixedPoints = fixedPoints(_forward);
+    }
+
+    /** Set this Permutation to the one mapping each index I of ALPHABET
+     *  to FORWARD[I].  FORWARD must have one element per character of
+     *  ALPHABET and contain each index exactly once. */
+    Permutation(int[] forward, Alphabet alphabet) {
+        if (forward.length != alphabet.size()) {
+            throw new EnigmaException("permutation table has wrong size");
+        }
+        _alphabet = alphabet;
+        _forward = forward.clone();
+        _inverse = new int[_forward.length];
+        Arrays.fill(_inverse, -1);
+        for (int i = 0; i < _forward.length; i += 1) {
+            int to = _forward[i];
+            if (to < 0 || to >= _inverse.length || _inverse[to] >= 0) {
+                throw new EnigmaException("permutation table is not a"
+                                          + " permutation");
+            }
+            _inverse[to] = i;
+        }
+        _fixedPoints = fixedPoints(_forward);
     }
 
     /** Add the cycle c0->c1->...->cm->c0 to the permutation, where CYCLE is
      *  c0c1...cm. */
     private void addCycle(String cycle) {
-        ArrayList<Character> newBuildCycle = new ArrayList<>();
         for (int i = 0; i < cycle.length(); i++) {
-            newBuildCycle.add(cycle.charAt(i));
+            int from = _alphabet.toInt(cycle.charAt(i));
+            int to = _alphabet.toInt(cycle.charAt((i + 1) % cycle.length()));
+            _forward[from] = to;
+            _inverse[to] = from;
         }
-        _cycleset.add(newBuildCycle);
     }
 
     /** Return the value of P modulo the size of this permutation. */
@@ -59,52 +89,58 @@ class Permutation {
     /** Return the result of applying this permutation to P modulo the
      *  alphabet size. */
     int permute(int p) {
-        char neworiCharacter = _alphabet.toChar(wrap(p));
-        char newpermCharacter = permute(neworiCharacter);
-        return _alphabet.toInt(newpermCharacter);
+        return _forward[wrap(p)];
     }
 
     /** Return the result of applying the inverse of this permutation
      *  to  C modulo the alphabet size. */
     int invert(int c) {
-        char neworiCharacter = _alphabet.toChar(wrap(c));
-        char newpermCharacter = invert(neworiCharacter);
-        return _alphabet.toInt(newpermCharacter);
+        return _inverse[wrap(c)];
     }
 
     /** Return the result of applying this permutation to the index of P
      *  in ALPHABET, and converting the result to a character of ALPHABET. */
     char permute(char p) {
-        char permutatedCharacter = p;
-        for (ArrayList<Character> currentCycle : _cycleset) {
-            if (currentCycle.contains(p)) {
-                int index = currentCycle.indexOf(p);
-                if (index != currentCycle.size() - 1) {
-                    permutatedCharacter = currentCycle.get(index + 1);
-                } else {
-                    permutatedCharacter = currentCycle.get(0);
-                }
-            }
-        }
-        return permutatedCharacter;
+        return _alphabet.toChar(_forward[_alphabet.toInt(p)]);
     }
 
     /** Return the result of applying the inverse of this permutation to C. */
     char invert(char c) {
-        char invertedCharacter = c;
-        for (ArrayList<Character> currentCycle : _cycleset) {
-            if (currentCycle.contains(c)) {
-                int index = currentCycle.indexOf(c);
-                if (index == 0) {
-                    invertedCharacter =
-                            currentCycle.get(currentCycle.size() - 1);
-                } else {
-                    invertedCharacter = currentCycle.get(index - 1);
-                }
+        return _alphabet.toChar(_inverse[_alphabet.toInt(c)]);
+    }
+
+    /** Return a table T such that T[S][P] is the result of applying this
+     *  permutation to P as seen through a rotor at setting S, that is,
+     *  permute(P + S) - S modulo the alphabet size.  The table is built
+     *  on first use and shared by every rotor using this permutation. */
+    synchronized int[][] conjugates() {
+        if (_conjugates == null) {
+            _conjugates = conjugateTable(_forward);
+        }
+        return _conjugates;
+    }
+
+    /** Return the table of conjugates() for the inverse of this
+     *  permutation. */
+    synchronized int[][] inverseConjugates() {
+        if (_inverseConjugates == null) {
+            _inverseConjugates = conjugateTable(_inverse);
+        }
+        return _inverseConjugates;
+    }
 
+    /** Return the conjugates of the permutation given by TABLE by every
+     *  rotation of the alphabet. */
+    private int[][] conjugateTable(int[] table) {
+        Metrics.conjugateTable();
+        int n = table.length;
+        int[][] result = new int[n][n];
+        for (int s = 0; s < n; s += 1) {
+            for (int p = 0; p < n; p += 1) {
+                result[s][p] = wrap(table[wrap(p + s)] - s);
             }
         }
-        return invertedCharacter;
+        return result;
     }
 
     /** Return the alphabet used to initialize this Permutation. */
@@ -113,20 +149,208 @@ class Permutation {
     }
 
     /** Return true iff this permutation is a derangement (i.e., a
-     *  permutation for which no value maps to itself). */
+     *  permutation for which no value maps to itself).  The fixed points
+     *  are counted once, when the permutation is built. */
     boolean derangement() {
-        for (int i = 0; i < _alphabet.size(); i++) {
-            if (permute(_alphabet.toChar(i)) == _alphabet.toChar(i)) {
-                return false;
+        return _fixedPoints == 0;
+    }
+
+    /** Return the number of indices that this permutation maps to
+     *  themselves. */
+    int fixedPoints() {
+        return _fixedPoints;
+    }
+
+    /** Return a new array holding the image of each index under this
+     *  permutation. */
+    int[] toArray() {
+        return _forward.clone();
+    }
+
+    /** Store the image of each index under this permutation in TABLE,
+     *  which must have size() elements. */
+    void copyInto(int[] table) {
+        System.arraycopy(_forward, 0, table, 0, _forward.length);
+    }
+
+    /** Return the lengths of the cycles of this permutation, longest
+     *  first, fixed points included as cycles of length 1.  They are
+     *  computed on first use and kept. */
+    int[] cycleType() {
+        return cycleStructure().clone();
+    }
+
+    /** Return the number of cycles of this permutation, counting fixed
+     *  points. */
+    int cycleCount() {
+        return cycleStructure().length;
+    }
+
+    /** Return the order of this permutation: the least positive power
+     *  of it that is the identity, which is the least common multiple of
+     *  its cycle lengths.  Returns -1 if that does not fit in a long. */
+    long order() {
+        long order = 1;
+        for (int len : cycleStructure()) {
+            long gcd = gcd(order, len);
+            if (order / gcd > Long.MAX_VALUE / len) {
+                return -1;
             }
+            order = order / gcd * len;
         }
-        return true;
+        return order;
+    }
+
+    /** Return the cycles of this permutation, each as the indices in
+     *  it starting with the smallest, ordered by their first index.
+     *  Fixed points are cycles of length 1. */
+    int[][] cycles() {
+        int n = _forward.length;
+        int[][] result = new int[cycleCount()][];
+        boolean[] seen = new boolean[n];
+        int count = 0;
+        for (int i = 0; i < n; i += 1) {
+            if (!seen[i]) {
+                int len = 0;
+                for (int j = i; !seen[j]; j = _forward[j]) {
+                    seen[j] = true;
+                    len += 1;
+                }
+                int[] cycle = new int[len];
+                for (int j = i, k = 0; k < len; j = _forward[j], k += 1) {
+                    cycle[k] = j;
+                }
+                result[count] = cycle;
+                count += 1;
+            }
+        }
+        return result;
+    }
+
+    /** Return my cycle type, computing it if need be. */
+    private synchronized int[] cycleStructure() {
+        if (_cycleType == null) {
+            int n = _forward.length;
+            boolean[] seen = new boolean[n];
+            int[] lengths = new int[n];
+            int count = 0;
+            for (int i = 0; i < n; i += 1) {
+                if (!seen[i]) {
+                    int len = 0;
+                    for (int j = i; !seen[j]; j = _forward[j]) {
+                        seen[j] = true;
+                        len += 1;
+                    }
+                    lengths[count] = len;
+                    count += 1;
+                }
+            }
+            lengths = Arrays.copyOf(lengths, count);
+            Arrays.sort(lengths);
+            for (int i = 0, j = count - 1; i < j; i += 1, j -= 1) {
+                int t = lengths[i];
+                lengths[i] = lengths[j];
+                lengths[j] = t;
+            }
+            _cycleType = lengths;
+        }
+        return _cycleType;
+    }
+
+    /* The methods below work on permutations represented as tables:
+     * arrays P of N distinct indices 0 .. N-1 giving the image P[I] of
+     * each index I.  None allocates; each writes into a caller's
+     * array, which must not be one of its arguments unless stated. */
+
+    /** Set RESULT to the permutation that applies FIRST and then SECOND,
+     *  so that RESULT[I] = SECOND[FIRST[I]].  RESULT may be FIRST. */
+    static void compose(int[] first, int[] second, int[] result) {
+        for (int i = 0; i < first.length; i += 1) {
+            result[i] = second[first[i]];
+        }
+    }
+
+    /** Set RESULT to the inverse of PERM. */
+    static void invert(int[] perm, int[] result) {
+        for (int i = 0; i < perm.length; i += 1) {
+            result[perm[i]] = i;
+        }
+    }
+
+    /** Set RESULT to the conjugate of PERM by BY: the permutation that
+     *  maps BY[I] to BY[PERM[I]], that is, BY o PERM o BY^-1. */
+    static void conjugate(int[] perm, int[] by, int[] result) {
+        for (int i = 0; i < perm.length; i += 1) {
+            result[by[i]] = by[perm[i]];
+        }
+    }
+
+    /** Set RESULT to PERM applied K times (its inverse applied -K times
+     *  if K is negative), using SCRATCH, of the same length, to hold one
+     *  cycle at a time.  Takes time proportional to the length of PERM,
+     *  whatever K. */
+    static void power(int[] perm, long k, int[] result, int[] scratch) {
+        int n = perm.length;
+        Arrays.fill(result, 0, n, -1);
+        for (int i = 0; i < n; i += 1) {
+            if (result[i] < 0) {
+                int len = 0;
+                int j = i;
+                do {
+                    scratch[len] = j;
+                    len += 1;
+                    j = perm[j];
+                } while (j != i);
+                int shift = (int) Math.floorMod(k, (long) len);
+                for (int m = 0; m < len; m += 1) {
+                    int to = m + shift;
+                    result[scratch[m]] = scratch[to >= len ? to - len : to];
+                }
+            }
+        }
+    }
+
+    /** Return the number of indices that the table PERM maps to
+     *  themselves. */
+    static int fixedPoints(int[] perm) {
+        int count = 0;
+        for (int i = 0; i < perm.length; i += 1) {
+            if (perm[i] == i) {
+                count += 1;
+            }
+        }
+        return count;
+    }
+
+    /** Return the greatest common divisor of non-negative A and B. */
+    private static long gcd(long a, long b) {
+        while (b != 0) {
+            long t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
     }
 
     /** Alphabet of this permutation. */
     private Alphabet _alphabet;
 
-    /** An arraylist of arraylists, each containing a cycle. */
-    private ArrayList<ArrayList<Character>> _cycleset;
+    /** Image of each index under this permutation. */
+    private int[] _forward;
+
+    /** Image of each index under the inverse of this permutation. */
+    private int[] _inverse;
+
+    /** Cached value of conjugates(), or null if not yet built. */
+    private int[][] _conjugates;
+
+    /** Cached value of inverseConjugates(), or null if not yet built. */
+    private int[][] _inverseConjugates;
+
+    /** Number of indices mapped to themselves. */
+    private int _fixedPoints;
+
+    /** Cycle lengths, longest first, or null if not yet computed. */
+    private int[] _cycleType;
 
 }
@@ -0,0 +1,123 @@
+package enigma;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static enigma.EnigmaException.*;
+
+/** A bounded cache of permutations parsed from cycle notation, keyed by
+ *  the alphabet and the text of the cycles, and evicting the least
+ *  recently used permutation when full.  Since a Permutation is never
+ *  modified once built, one instance may be handed to every caller that
+ *  parses the same cycles, as the setting lines of a long input usually
+ *  repeat a few plugboards.  Safe for use by several threads.
+ *  @author Krish Rambhiya
+ */
+class PermutationCache {
+
+    /** A cache holding at most CAPACITY permutations. */
+    PermutationCache(int capacity) {
+        if (capacity <= 0) {
+            throw error("permutation cache capacity must be positive");
+        }
+        _capacity = capacity;
+        _entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Permutation>
+                                                eldest) {
+                return size() > _capacity;
+            }
+        };
+    }
+
+    /** Return the capacity of this cache. */
+    int capacity() {
+        return _capacity;
+    }
+
+    /** Return the number of permutations currently cached. */
+    synchronized int count() {
+        return _entries.size();
+    }
+
+    /** Return the number of lookups that found their permutation. */
+    synchronized long hits() {
+        return _hits;
+    }
+
+    /** Return the number of lookups that had to parse their cycles. */
+    synchronized long misses() {
+        return _misses;
+    }
+
+    /** Return the permutation of ALPHABET given by CYCLES, as
+     *  new Permutation(CYCLES, ALPHABET) would build it, parsing CYCLES
+     *  only if it is not cached. */
+    Permutation get(String cycles, Alphabet alphabet) {
+        Key key = new Key(cycles, alphabet);
+        synchronized (this) {
+            Permutation perm = _entries.get(key);
+            if (perm != null) {
+                _hits += 1;
+                return perm;
+            }
+            _misses += 1;
+        }
+        Permutation perm = new Permutation(cycles, alphabet);
+        synchronized (this) {
+            Permutation raced = _entries.putIfAbsent(key, perm);
+            return raced == null ? perm : raced;
+        }
+    }
+
+    /** Discard every cached permutation, keeping the hit and miss
+     *  counts. */
+    synchronized void clear() {
+        _entries.clear();
+    }
+
+    /** The key of a cached permutation. */
+    private static class Key {
+
+        /** The key for CYCLES over ALPHABET. */
+        Key(String cycles, Alphabet alphabet) {
+            _cycles = cycles;
+            _alphabet = alphabet;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return _alphabet == other._alphabet
+                && _cycles.equals(other._cycles);
+        }
+
+        @Override
+        public int hashCode() {
+            return _cycles.hashCode() * 31
+                + System.identityHashCode(_alphabet);
+        }
+
+        /** Text of the cycles. */
+        private final String _cycles;
+
+        /** Alphabet, compared by identity. */
+        private final Alphabet _alphabet;
+    }
+
+    /** Cache shared by all parsers of setting lines. */
+    static final PermutationCache SHARED = new PermutationCache(1024);
+
+    /** Most permutations held. */
+    private final int _capacity;
+
+    /** Cached permutations, least recently used first. */
+    private final LinkedHashMap<Key, Permutation> _entries;
+
+    /** Lookups that found, and did not find, their permutation. */
+    private long _hits, _misses;
+
+}
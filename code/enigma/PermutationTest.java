@@ -50,6 +50,14 @@ public class PermutationTest {
         checkPerm("identity", UPPER_STRING, UPPER_STRING);
     }
 
+    @Test
+    public void checkNavalRotors() {
+        for (String name : NAVALA_MAP.keySet()) {
+            perm = new Permutation(NAVALA.get(name), UPPER);
+            checkPerm("naval " + name, UPPER_STRING, NAVALA_MAP.get(name));
+        }
+    }
+
     @Test
     public void testsize() {
         Permutation p = new Permutation("(BACD)", new Alphabet("ABCD"));
@@ -116,6 +124,65 @@ public class PermutationTest {
         assertEquals(false, p.derangement());
     }
 
+    @Test
+    public void testCycleType() {
+        Permutation p = new Permutation("(BAC) (DE)", new Alphabet("ABCDEFG"));
+        assertArrayEquals(new int[] { 3, 2, 1, 1 }, p.cycleType());
+        assertEquals(4, p.cycleCount());
+        assertEquals(2, p.fixedPoints());
+        assertEquals(6, p.order());
+        int[][] cycles = p.cycles();
+        assertArrayEquals(new int[] { 0, 2, 1 }, cycles[0]);
+        assertArrayEquals(new int[] { 3, 4 }, cycles[1]);
+        assertArrayEquals(new int[] { 6 }, cycles[3]);
+        p = new Permutation(new int[] { 1, 0, 3, 2 }, new Alphabet("ABCD"));
+        assertTrue(p.derangement());
+        assertEquals(0, p.fixedPoints());
+        assertArrayEquals(new int[] { 2, 2 }, p.cycleType());
+    }
+
+    @Test
+    public void testTableAlgebra() {
+        Permutation p = new Permutation("(BACD) (EF)",
+                                        new Alphabet("ABCDEF"));
+        int[] table = p.toArray(), result = new int[6],
+            scratch = new int[6], check = new int[6];
+        Permutation.compose(table, table, result);
+        Permutation.power(table, 2, check, scratch);
+        assertArrayEquals(result, check);
+        Permutation.invert(table, result);
+        Permutation.power(table, -1, check, scratch);
+        assertArrayEquals(result, check);
+        Permutation.power(table, p.order(), check, scratch);
+        assertArrayEquals(new int[] { 0, 1, 2, 3, 4, 5 }, check);
+        Permutation.compose(table, result, check);
+        assertArrayEquals(new int[] { 0, 1, 2, 3, 4, 5 }, check);
+        int[] by = { 1, 2, 3, 4, 5, 0 };
+        Permutation.conjugate(table, by, result);
+        for (int i = 0; i < 6; i += 1) {
+            assertEquals(by[table[i]], result[by[i]]);
+        }
+        Permutation.compose(table, by, check);
+        Permutation.compose(table, by, table);
+        assertArrayEquals(check, table);
+    }
+
+    @Test
+    public void testPermutationCache() {
+        PermutationCache cache = new PermutationCache(2);
+        Alphabet alpha = new Alphabet("ABCD");
+        Permutation p = cache.get("(AB)(CD)", alpha);
+        assertSame(p, cache.get("(AB)(CD)", alpha));
+        assertEquals('B', p.permute('A'));
+        cache.get("(AC)", alpha);
+        cache.get("(AD)", alpha);
+        assertEquals(2, cache.count());
+        assertNotSame(p, cache.get("(AB)(CD)", alpha));
+        assertNotSame(p, cache.get("(AB)(CD)", new Alphabet("ABCD")));
+        assertEquals(1, cache.hits());
+        assertEquals(5, cache.misses());
+    }
+
     @Test(expected = EnigmaException.class)
     public void testNotInAlphabet() {
         Permutation p = new Permutation("(BACD)", new Alphabet("ABCD"));
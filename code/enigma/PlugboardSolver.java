@@ -0,0 +1,243 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static enigma.EnigmaException.*;
+
+/** A search for the plugboard of a machine whose rotors and starting
+ *  positions are known.  Starting from a random plugboard, it repeatedly
+ *  tries connecting each pair of letters (disconnecting their former
+ *  partners) and keeps changes that raise the n-gram score of the
+ *  decryption.  While the temperature is above zero, a change that
+ *  lowers the score by D is also kept with probability
+ *  exp(D / temperature), and the temperature falls after every pass.
+ *  Independent restarts, each seeded from a single seed, run in parallel,
+ *  and the best plugboard found is returned.
+ *
+ *  The unplugged machine at each position of the message is tabulated
+ *  once, so decrypting under a trial plugboard P is just
+ *  P(S_i(P(c_i))) at each position #i.  Scoring allocates nothing.
+ *  @author Krish Rambhiya
+ */
+class PlugboardSolver {
+
+    /** A solver for the plugboard of MACHINE, whose rotors are inserted
+     *  and set to their starting positions (its plugboard is ignored),
+     *  given CIPHERTEXT as alphabet indices, scoring decryptions by the
+     *  sum of their scores under TABLES. */
+    PlugboardSolver(Machine machine, int[] ciphertext,
+                    NGramTable... tables) {
+        if (tables.length == 0) {
+            throw error("no n-gram tables to score with");
+        }
+        for (NGramTable table : tables) {
+            if (table.alphabet().size() != machine.alphabet().size()) {
+                throw error("n-gram table has the wrong alphabet size");
+            }
+        }
+        _alphabet = machine.alphabet();
+        _ciphertext = ciphertext.clone();
+        _tables = tables.clone();
+        Machine M = machine.copy();
+        M.setPlugboard(new Permutation("", _alphabet));
+        _scramblers = new int[ciphertext.length][_alphabet.size()];
+        for (int i = 0; i < ciphertext.length; i += 1) {
+            M.advanceAndTabulate(_scramblers[i]);
+        }
+    }
+
+    /** The outcome of a search: a plugboard and the score of the
+     *  decryption under it. */
+    static class Result {
+
+        /** A result with plugboard PLUGS in cycle notation, and score
+         *  SCORE. */
+        Result(String plugs, double score) {
+            _plugs = plugs;
+            _score = score;
+        }
+
+        /** Return the plugboard in cycle notation. */
+        String plugs() {
+            return _plugs;
+        }
+
+        /** Return the score of the decryption. */
+        double score() {
+            return _score;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s %.3f", _plugs, _score);
+        }
+
+        /** Plugboard. */
+        private final String _plugs;
+
+        /** Score. */
+        private final double _score;
+    }
+
+    /** Return the best plugboard with at most MAXPAIRS pairs found by
+     *  RESTARTS independent climbs, starting at temperature TEMPERATURE
+     *  (0 for pure hill-climbing), with random choices derived from
+     *  SEED.  The result depends only on the arguments, not on the
+     *  number of threads. */
+    Result solve(int restarts, int maxPairs, double temperature, long seed) {
+        if (restarts <= 0 || maxPairs < 0 || temperature < 0) {
+            throw error("bad plugboard search parameters");
+        }
+        Result[] results = new Result[restarts];
+        IntStream.range(0, restarts).parallel().forEach(r ->
+            results[r] = climb(new Random(seed + r * SEED_STRIDE), maxPairs,
+                               temperature));
+        Result best = results[0];
+        for (Result result : results) {
+            if (result.score() > best.score()) {
+                best = result;
+            }
+        }
+        return best;
+    }
+
+    /** Return the result of one climb with at most MAXPAIRS pairs, from
+     *  temperature TEMPERATURE, with random choices from RANDOM. */
+    private Result climb(Random random, int maxPairs, double temperature) {
+        int size = _alphabet.size();
+        int[] plug = new int[size], best = new int[size];
+        int[] plain = new int[_ciphertext.length];
+        for (int c = 0; c < size; c += 1) {
+            plug[c] = c;
+        }
+        for (int k = 0; k < maxPairs / 2; k += 1) {
+            connect(plug, random.nextInt(size), random.nextInt(size));
+        }
+        double score = score(plug, plain);
+        double bestScore = score;
+        System.arraycopy(plug, 0, best, 0, size);
+        int[] saved = new int[4];
+        boolean improved = true;
+        while (improved || temperature > MIN_TEMPERATURE) {
+            improved = false;
+            for (int a = 0; a < size; a += 1) {
+                for (int b = a + 1; b < size; b += 1) {
+                    saved[0] = a;
+                    saved[1] = b;
+                    saved[2] = plug[a];
+                    saved[3] = plug[b];
+                    if (plug[a] == b) {
+                        disconnect(plug, a);
+                    } else {
+                        connect(plug, a, b);
+                    }
+                    double trial = pairs(plug) > maxPairs
+                        ? Double.NEGATIVE_INFINITY : score(plug, plain);
+                    if (trial > score
+                        || (temperature > MIN_TEMPERATURE
+                            && trial > Double.NEGATIVE_INFINITY
+                            && random.nextDouble()
+                               < Math.exp((trial - score) / temperature))) {
+                        improved |= trial > score;
+                        score = trial;
+                        if (score > bestScore) {
+                            bestScore = score;
+                            System.arraycopy(plug, 0, best, 0, size);
+                        }
+                    } else {
+                        restore(plug, saved);
+                    }
+                }
+            }
+            temperature *= COOLING;
+        }
+        return new Result(cycles(best), bestScore);
+    }
+
+    /** Return the score of the decryption of _ciphertext under plugboard
+     *  PLUG, using PLAIN as scratch space. */
+    private double score(int[] plug, int[] plain) {
+        for (int i = 0; i < plain.length; i += 1) {
+            plain[i] = plug[_scramblers[i][plug[_ciphertext[i]]]];
+        }
+        double score = 0;
+        for (NGramTable table : _tables) {
+            score += table.score(plain, plain.length);
+        }
+        return score;
+    }
+
+    /** Connect A and B in PLUG, first disconnecting their partners. */
+    private static void connect(int[] plug, int a, int b) {
+        disconnect(plug, a);
+        disconnect(plug, b);
+        plug[a] = b;
+        plug[b] = a;
+    }
+
+    /** Disconnect A and its partner in PLUG. */
+    private static void disconnect(int[] plug, int a) {
+        plug[plug[a]] = plug[a];
+        plug[a] = a;
+    }
+
+    /** Undo a change to PLUG, given SAVED: two letters followed by their
+     *  partners before the change. */
+    private static void restore(int[] plug, int[] saved) {
+        for (int k = 0; k < 2; k += 1) {
+            disconnect(plug, saved[k]);
+            disconnect(plug, saved[k + 2]);
+        }
+        for (int k = 0; k < 2; k += 1) {
+            plug[saved[k]] = saved[k + 2];
+            plug[saved[k + 2]] = saved[k];
+        }
+    }
+
+    /** Return the number of connected pairs in PLUG. */
+    private static int pairs(int[] plug) {
+        int n = 0;
+        for (int c = 0; c < plug.length; c += 1) {
+            if (plug[c] > c) {
+                n += 1;
+            }
+        }
+        return n;
+    }
+
+    /** Return PLUG in cycle notation. */
+    private String cycles(int[] plug) {
+        ArrayList<String> pairs = new ArrayList<>();
+        for (int a = 0; a < plug.length; a += 1) {
+            if (plug[a] > a) {
+                pairs.add("(" + _alphabet.toChar(a)
+                          + _alphabet.toChar(plug[a]) + ")");
+            }
+        }
+        return String.join(" ", pairs);
+    }
+
+    /** Spacing between the seeds of successive restarts. */
+    private static final long SEED_STRIDE = 0x9E3779B97F4A7C15L;
+
+    /** Factor by which the temperature falls after each pass. */
+    private static final double COOLING = 0.9;
+
+    /** Temperature below which the search is a pure hill-climb. */
+    private static final double MIN_TEMPERATURE = 1e-3;
+
+    /** Alphabet of the machine. */
+    private final Alphabet _alphabet;
+
+    /** Ciphertext, as alphabet indices. */
+    private final int[] _ciphertext;
+
+    /** Tables whose scores are summed. */
+    private final NGramTable[] _tables;
+
+    /** The unplugged machine at each position of the message. */
+    private final int[][] _scramblers;
+
+}
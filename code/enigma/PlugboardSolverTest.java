@@ -0,0 +1,121 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the PlugboardSolver and NGramTable
+ *  classes.
+ *  @author
+ */
+public class PlugboardSolverTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Text from which n-gram statistics are taken. */
+    static final String CORPUS =
+        "IT WAS THE BEST OF TIMES IT WAS THE WORST OF TIMES IT WAS THE AGE "
+        + "OF WISDOM IT WAS THE AGE OF FOOLISHNESS IT WAS THE EPOCH OF "
+        + "BELIEF IT WAS THE EPOCH OF INCREDULITY IT WAS THE SEASON OF "
+        + "LIGHT IT WAS THE SEASON OF DARKNESS IT WAS THE SPRING OF HOPE IT "
+        + "WAS THE WINTER OF DESPAIR WE HAD EVERYTHING BEFORE US WE HAD "
+        + "NOTHING BEFORE US WE WERE ALL GOING DIRECT TO HEAVEN WE WERE ALL "
+        + "GOING DIRECT THE OTHER WAY IN SHORT THE PERIOD WAS SO FAR LIKE "
+        + "THE PRESENT PERIOD THAT SOME OF ITS NOISIEST AUTHORITIES "
+        + "INSISTED ON ITS BEING RECEIVED FOR GOOD OR FOR EVIL IN THE "
+        + "SUPERLATIVE DEGREE OF COMPARISON ONLY THERE WERE A KING WITH A "
+        + "LARGE JAW AND A QUEEN WITH A PLAIN FACE ON THE THRONE OF "
+        + "ENGLAND THERE WERE A KING WITH A LARGE JAW AND A QUEEN WITH A "
+        + "FAIR FACE ON THE THRONE OF FRANCE";
+
+    /** Return the letters of S as alphabet indices. */
+    private static int[] indices(String s) {
+        String letters = s.replace(" ", "");
+        int[] result = new int[letters.length()];
+        for (int i = 0; i < result.length; i += 1) {
+            result[i] = UPPER.toInt(letters.charAt(i));
+        }
+        return result;
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testNGramScore() {
+        NGramTable table = NGramTable.fromText(UPPER, 2, "ABAB AB");
+        assertEquals(2, table.n());
+        int ab = UPPER.toInt('A') * 26 + UPPER.toInt('B');
+        assertEquals(Math.log10(3.0 / 5), table.logProb(ab), 1e-6);
+        assertEquals(2 * Math.log10(3.0 / 5) + Math.log10(2.0 / 5),
+                     table.score(indices("ABAB"), 4), 1e-6);
+        assertEquals(0, table.score(indices("A"), 1), 1e-9);
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testNGramTableSize() {
+        new NGramTable(UPPER, 2, new float[26]);
+    }
+
+    @Test
+    public void testSaveAndMap() throws IOException {
+        NGramTable table =
+            NGramTable.fromReader(UPPER, 3, new StringReader(CORPUS));
+        Path file = Files.createTempFile("ngrams", ".bin");
+        try {
+            table.save(file);
+            NGramTable mapped = NGramTable.map(file);
+            assertEquals(3, mapped.n());
+            assertEquals(UPPER.size(), mapped.alphabet().size());
+            int[] text = indices(CORPUS);
+            assertEquals(table.score(text, text.length),
+                         mapped.score(text, text.length), 1e-9);
+            assertEquals(NGramTable.fromText(UPPER, 3, CORPUS)
+                         .score(text, text.length),
+                         mapped.score(text, text.length), 1e-9);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testMapBadFile() throws IOException {
+        Path file = Files.createTempFile("ngrams", ".bin");
+        try {
+            Files.write(file, "not a table at all".getBytes("UTF-8"));
+            NGramTable.map(file);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testRecoversPlugboard() {
+        String plugs = "(AK) (EN) (HW) (OT) (RY)";
+        String plain = CORPUS.substring(0, 300);
+        Machine M = MachineTest.navalMachine(MachineTest.ROTORS, "QKTD",
+                                             plugs);
+        int[] cipher = indices(M.convert(plain));
+        Machine unplugged = MachineTest.navalMachine(MachineTest.ROTORS,
+                                                     "QKTD", "");
+        PlugboardSolver solver = new PlugboardSolver(unplugged, cipher,
+            NGramTable.fromText(UPPER, 2, CORPUS),
+            NGramTable.fromText(UPPER, 4, CORPUS));
+        PlugboardSolver.Result result = solver.solve(8, 6, 0, 61);
+        assertEquals(plugs, result.plugs());
+        assertEquals(result.plugs(), solver.solve(8, 6, 0, 61).plugs());
+        assertEquals(plugs, solver.solve(4, 6, 2.0, 17).plugs());
+    }
+
+}
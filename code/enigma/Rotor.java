@@ -13,6 +13,12 @@ class Rotor {
         _name = name;
         _permutation = perm;
         _setting = 0;
+        if (perm.size() <= TABLE_LIMIT) {
+            _forward = perm.conjugates();
+            _backward = perm.inverseConjugates();
+        } else {
+            _forward = _backward = null;
+        }
     }
 
     /**  Returns name.*/
@@ -47,8 +53,7 @@ class Rotor {
 
     /** NEWPOSN for setting.  */
     void set(int newPosn) {
-        final int k = 26;
-        _setting = loopMod(newPosn, k);
+        _setting = loopMod(newPosn, size());
     }
 
     /** CPOSN for char. */
@@ -59,6 +64,9 @@ class Rotor {
     /** Return the conversion of P (an integer in the range 0..size()-1)
      *  according to my permutation. */
     int convertForward(int p) {
+        if (_forward != null) {
+            return _forward[_setting][p];
+        }
         int finalVar = _permutation.permute(p + _setting % size());
         return loopMod(finalVar - _setting, size());
     }
@@ -66,6 +74,9 @@ class Rotor {
     /** Return the conversion of E (an integer in the range 0..size()-1)
      *  according to the inverse of my permutation. */
     int convertBackward(int e) {
+        if (_backward != null) {
+            return _backward[_setting][e];
+        }
         int finalVar = _permutation.invert(e + _setting % size());
         return loopMod(finalVar - _setting, size());
     }
@@ -73,6 +84,11 @@ class Rotor {
     /** Returns true iff I am positioned to allow the rotor to my left
      *  to advance. */
     boolean atNotch() {
+        return notchAt(_setting);
+    }
+
+    /** Returns true iff I would be at a notch in setting POSN. */
+    boolean notchAt(int posn) {
         return false;
     }
 
@@ -80,6 +96,31 @@ class Rotor {
     void advance() {
     }
 
+    /** Return a new rotor with my name, permutation and setting, whose
+     *  setting may then change independently of mine. */
+    Rotor copy() {
+        Rotor result = new Rotor(_name, _permutation);
+        result.set(_setting);
+        return result;
+    }
+
+    /** Return my permutation. */
+    Permutation permutation() {
+        return _permutation;
+    }
+
+    /** Return my forward conversion of each input at each setting, or
+     *  null if my alphabet is too large to tabulate. */
+    int[][] forwardTable() {
+        return _forward;
+    }
+
+    /** Return my backward conversion of each input at each setting, or
+     *  null. */
+    int[][] backwardTable() {
+        return _backward;
+    }
+
     @Override
     public String toString() {
         return "Rotor " + _name;
@@ -97,9 +138,20 @@ class Rotor {
         }
         return outcome;
     }
+
+    /** Largest alphabet for which per-setting tables are built. */
+    private static final int TABLE_LIMIT = 256;
+
     /** Permutation. */
     private Permutation _permutation;
 
+    /** Forward conversion of each input at each setting, or null if the
+     *  alphabet is too large to tabulate. */
+    private final int[][] _forward;
+
+    /** Backward conversion of each input at each setting, or null. */
+    private final int[][] _backward;
+
     /** Setting. */
     private int _setting;
 
@@ -0,0 +1,266 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static enigma.EnigmaException.*;
+
+/** The rotors available to a machine, each given an integer id (its
+ *  index in the collection it was built from) and found by name through
+ *  a hash table.  A rotor order, the rotors for each slot of a machine,
+ *  may be compiled once into an Order, holding the rotors and their
+ *  stepping, so that a machine can switch to it without looking up any
+ *  name.  A registry is never modified once built, and may be shared by
+ *  machines on several threads.
+ *  @author Krish Rambhiya
+ */
+class RotorRegistry {
+
+    /** A registry of ROTORS.  If several rotors share a name, the name
+     *  refers to the last of them. */
+    RotorRegistry(Collection<Rotor> rotors) {
+        _rotors = rotors.toArray(new Rotor[0]);
+        _ids = new HashMap<>(_rotors.length * 2);
+        for (int id = 0; id < _rotors.length; id += 1) {
+            _ids.put(_rotors[id].name(), id);
+        }
+    }
+
+    /** Return the number of rotors. */
+    int size() {
+        return _rotors.length;
+    }
+
+    /** Return the rotor with id ID. */
+    Rotor rotor(int id) {
+        if (id < 0 || id >= _rotors.length) {
+            throw error("no rotor with id %d", id);
+        }
+        return _rotors[id];
+    }
+
+    /** Return the id of the rotor named NAME. */
+    int id(String name) {
+        Integer id = _ids.get(name);
+        if (id == null) {
+            throw error("no rotor named %s", name);
+        }
+        return id;
+    }
+
+    /** A compiled rotor order: the rotors for each slot of a machine,
+     *  reflector first, with their stepping. */
+    class Order {
+
+        /** The order of the rotors with ids IDS. */
+        private Order(int[] ids) {
+            _orderIds = ids;
+            _orderRotors = new Rotor[ids.length];
+            for (int k = 0; k < ids.length; k += 1) {
+                _orderRotors[k] = _rotors[ids[k]];
+            }
+            _stepping = new Stepping(_orderRotors,
+                                     _orderRotors[0].size());
+        }
+
+        /** Return the registry my rotors come from. */
+        RotorRegistry registry() {
+            return RotorRegistry.this;
+        }
+
+        /** Return the number of slots I fill. */
+        int size() {
+            return _orderIds.length;
+        }
+
+        /** Return the id of the rotor in slot K. */
+        int id(int k) {
+            return _orderIds[k];
+        }
+
+        /** Return the rotor in slot K, which must not be modified. */
+        Rotor rotor(int k) {
+            return _orderRotors[k];
+        }
+
+        /** Return the names of my rotors, reflector first. */
+        String[] names() {
+            String[] names = new String[_orderRotors.length];
+            for (int k = 0; k < names.length; k += 1) {
+                names[k] = _orderRotors[k].name();
+            }
+            return names;
+        }
+
+        /** Return the stepping of my rotors. */
+        Stepping stepping() {
+            return _stepping;
+        }
+
+        @Override
+        public String toString() {
+            return String.join(" ", names());
+        }
+
+        /** Rotor ids by slot. */
+        private final int[] _orderIds;
+
+        /** Rotors by slot. */
+        private final Rotor[] _orderRotors;
+
+        /** Compiled stepping of _orderRotors. */
+        private final Stepping _stepping;
+    }
+
+    /** Return the order of the rotors with ids IDS, reflector first. */
+    Order order(int[] ids) {
+        if (ids.length < 2) {
+            throw error("a rotor order needs at least two rotors");
+        }
+        for (int id : ids) {
+            rotor(id);
+        }
+        return new Order(ids.clone());
+    }
+
+    /** Return the order of the rotors named NAMES, reflector first.  The
+     *  orders of the first few sequences of names asked for are kept and
+     *  returned again for the same names. */
+    Order order(String[] names) {
+        String key = String.join(" ", names);
+        Order result = _orders.get(key);
+        if (result == null) {
+            int[] ids = new int[names.length];
+            for (int k = 0; k < names.length; k += 1) {
+                ids[k] = id(names[k]);
+            }
+            result = order(ids);
+            if (_orders.size() < MAX_KEPT_ORDERS) {
+                _orders.putIfAbsent(key, result);
+            }
+        }
+        return result;
+    }
+
+    /** Return every valid order of my rotors for a machine with NUMROTORS
+     *  slots and PAWLS pawls: a reflector, then NUMROTORS - PAWLS - 1
+     *  distinct non-moving rotors, then PAWLS distinct moving rotors.  The
+     *  orders are produced one at a time as they are iterated, the
+     *  rightmost slot varying fastest and the rotors of each slot taken
+     *  by id. */
+    Iterable<Order> orders(int numRotors, int pawls) {
+        if (numRotors < 2 || pawls < 0 || pawls >= numRotors) {
+            throw error("bad number of rotors or pawls");
+        }
+        ArrayList<Integer> reflectors = new ArrayList<>(),
+            fixed = new ArrayList<>(), moving = new ArrayList<>();
+        for (int id = 0; id < _rotors.length; id += 1) {
+            if (_rotors[id].reflecting()) {
+                reflectors.add(id);
+            } else if (_rotors[id].rotates()) {
+                moving.add(id);
+            } else {
+                fixed.add(id);
+            }
+        }
+        int[][] choices = new int[numRotors][];
+        for (int k = 0; k < numRotors; k += 1) {
+            ArrayList<Integer> from =
+                k == 0 ? reflectors : k < numRotors - pawls ? fixed : moving;
+            choices[k] = from.stream().mapToInt(Integer::intValue).toArray();
+        }
+        return () -> new OrderIterator(choices);
+    }
+
+    /** An iterator over the orders that take the rotor in each slot K
+     *  from CHOICES[K], no rotor after the reflector appearing twice. */
+    private class OrderIterator implements Iterator<Order> {
+
+        /** An iterator over the orders drawn from CHOICES. */
+        OrderIterator(int[][] choices) {
+            _choices = choices;
+            _index = new int[choices.length];
+            _slot = 0;
+            findNext();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return _slot >= 0;
+        }
+
+        @Override
+        public Order next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            int[] ids = new int[_choices.length];
+            for (int k = 0; k < ids.length; k += 1) {
+                ids[k] = _choices[k][_index[k]];
+            }
+            _index[_slot] += 1;
+            findNext();
+            return new Order(ids);
+        }
+
+        /** Advance _index, starting at slot _slot, to the next valid
+         *  order, leaving _slot at the rightmost slot, or set _slot to -1
+         *  if there is none. */
+        private void findNext() {
+            int last = _choices.length - 1;
+            while (_slot >= 0) {
+                int k = _slot;
+                if (_index[k] >= _choices[k].length) {
+                    _slot -= 1;
+                    if (_slot >= 0) {
+                        _index[_slot] += 1;
+                    }
+                } else if (used(k, _choices[k][_index[k]])) {
+                    _index[k] += 1;
+                } else if (k == last) {
+                    return;
+                } else {
+                    _slot += 1;
+                    _index[_slot] = 0;
+                }
+            }
+        }
+
+        /** Return true iff rotor ID is already in a slot from 1 to K - 1. */
+        private boolean used(int k, int id) {
+            for (int j = 1; j < k; j += 1) {
+                if (_choices[j][_index[j]] == id) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /** Ids of the rotors that may go in each slot. */
+        private final int[][] _choices;
+
+        /** Index in _choices of the rotor now in each slot. */
+        private final int[] _index;
+
+        /** Slot being filled, or -1 when there are no more orders. */
+        private int _slot;
+    }
+
+    /** Most orders by name kept by order(String[]). */
+    private static final int MAX_KEPT_ORDERS = 4096;
+
+    /** Rotors by id. */
+    private final Rotor[] _rotors;
+
+    /** Id of each rotor name. */
+    private final HashMap<String, Integer> _ids;
+
+    /** Orders already compiled, by their names joined with blanks. */
+    private final ConcurrentHashMap<String, Order> _orders =
+        new ConcurrentHashMap<>();
+
+}
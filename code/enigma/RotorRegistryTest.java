@@ -0,0 +1,78 @@
+package enigma;
+
+import java.util.HashSet;
+import java.util.Iterator;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the RotorRegistry class.
+ *  @author
+ */
+public class RotorRegistryTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    @Test
+    public void testIds() {
+        RotorRegistry registry =
+            new RotorRegistry(MachineTest.navalRotors());
+        assertEquals(MachineTest.navalRotors().size(), registry.size());
+        for (int id = 0; id < registry.size(); id += 1) {
+            assertEquals(id, registry.id(registry.rotor(id).name()));
+        }
+        RotorRegistry.Order order = registry.order(MachineTest.ROTORS);
+        assertSame(order, registry.order(MachineTest.ROTORS));
+        assertArrayEquals(MachineTest.ROTORS, order.names());
+        assertEquals(registry.id("Beta"), order.id(1));
+    }
+
+    @Test
+    public void testOrders() {
+        Machine M = new Machine(UPPER, 5, 3, MachineTest.navalRotors());
+        Iterator<RotorRegistry.Order> orders =
+            M.rotorRegistry().orders(5, 3).iterator();
+        HashSet<String> seen = new HashSet<>();
+        while (orders.hasNext()) {
+            RotorRegistry.Order order = orders.next();
+            assertTrue(order.rotor(0).reflecting());
+            assertFalse(order.rotor(1).rotates());
+            HashSet<Integer> ids = new HashSet<>();
+            for (int k = 2; k < 5; k += 1) {
+                assertTrue(order.rotor(k).rotates());
+                assertTrue(ids.add(order.id(k)));
+            }
+            assertTrue(seen.add(order.toString()));
+        }
+        assertEquals(2 * 2 * 8 * 7 * 6, seen.size());
+    }
+
+    @Test
+    public void testInsertCompiledOrder() {
+        Machine M = MachineTest.navalMachine(MachineTest.ROTORS, "AAAA",
+                                             "(AQ) (EP)");
+        M.insertRotors(new String[] { "C", "Gamma", "IV", "V", "VI" });
+        M.insertRotors(M.rotorRegistry().order(MachineTest.ROTORS));
+        M.setRotors("AAAA");
+        assertEquals("IHBDQ QMTQZ", M.convert("HELLO WORLD"));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testNoSuchRotor() {
+        new RotorRegistry(MachineTest.navalRotors()).id("XI");
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testOrderFromOtherMachine() {
+        Machine M = new Machine(UPPER, 5, 3, MachineTest.navalRotors());
+        RotorRegistry other = new RotorRegistry(MachineTest.navalRotors());
+        M.insertRotors(other.order(MachineTest.ROTORS));
+    }
+
+}
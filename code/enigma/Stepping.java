@@ -0,0 +1,314 @@
+package enigma;
+
+import java.util.Collections;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import static enigma.EnigmaException.*;
+
+/** The stepping of a set of rotors, compiled from the rotors in the
+ *  slots of a machine (reflector first) into tables, so that a key press
+ *  looks up one flag per slot instead of asking each rotor about its
+ *  notches.  The rotor in slot K moves on a key press if it is the
+ *  rightmost, or if it has a pawl and its right neighbor is at a notch,
+ *  in which case that neighbor moves too (double stepping); no rotor
+ *  moves twice.
+ *
+ *  The positions of the rotors other than the reflector may be packed
+ *  into a single number, rightmost rotor in the lowest digit, when there
+ *  are few enough of them.  Over packed positions, stepping is a
+ *  next-state function, from which the period of the positions from a
+ *  given start and the cycle structure of the whole state space are
+ *  derived.
+ *  @author Krish Rambhiya
+ */
+class Stepping {
+
+    /** The stepping of ROTORS, the rotors in the slots of a machine over
+     *  an alphabet of SIZE characters, reflector first. */
+    Stepping(Rotor[] rotors, int size) {
+        int n = rotors.length;
+        if (n < 2) {
+            throw error("stepping needs at least two rotor slots");
+        }
+        _size = size;
+        _right = n - 1;
+        _rotates = new boolean[n];
+        _triggers = new boolean[n][];
+        for (int k = 0; k < n; k += 1) {
+            _rotates[k] = rotors[k].rotates();
+        }
+        for (int k = 0; k < _right; k += 1) {
+            _triggers[k] = new boolean[size];
+            for (int p = 0; p < size; p += 1) {
+                _triggers[k][p] = _rotates[k] && rotors[k + 1].notchAt(p);
+            }
+        }
+        _weights = new long[n];
+        double states = Math.pow(size, _right);
+        _packable = states <= Long.MAX_VALUE;
+        _states = _packable ? (long) states : -1;
+        long weight = 1;
+        for (int k = _right; k >= 1 && _packable; k -= 1) {
+            _weights[k] = weight;
+            weight *= size;
+        }
+    }
+
+    /** Return true iff the rotor in slot K moves, together with its right
+     *  neighbor, on a key press when that neighbor is in position POSN.
+     *  K must not be the rightmost slot. */
+    boolean triggers(int k, int posn) {
+        return _triggers[k][posn];
+    }
+
+    /** Return true iff the rotor in slot K rotates. */
+    boolean rotates(int k) {
+        return _rotates[k];
+    }
+
+    /** Update the positions POS (indexed by slot) to their values after
+     *  one key press.  Each decision depends only on positions not yet
+     *  changed, so the slots are decided and moved in one pass. */
+    void step(int[] pos) {
+        step(pos, 0, 1);
+    }
+
+    /** Update positions to their values after one key press, as for
+     *  step(int[]), where the position of slot K is kept in
+     *  POS[BASE + K * STRIDE].  This serves positions stored as a
+     *  structure of arrays, one run per slot. */
+    void step(int[] pos, int base, int stride) {
+        for (int k = 0; k <= _right; k += 1) {
+            if (k == _right
+                || _triggers[k][pos[base + (k + 1) * stride]]) {
+                advance(pos, base + k * stride, k);
+                if (k < _right) {
+                    advance(pos, base + (k + 1) * stride, k + 1);
+                    k += 1;
+                }
+            }
+        }
+    }
+
+    /** Advance POS[AT], the position of slot K, if the rotor in slot K
+     *  rotates. */
+    private void advance(int[] pos, int at, int k) {
+        if (_rotates[k]) {
+            pos[at] = pos[at] == _size - 1 ? 0 : pos[at] + 1;
+        }
+    }
+
+    /** Return true iff positions POS (indexed by slot) are quiet: a key
+     *  press there moves only the rightmost rotor. */
+    boolean quiet(int[] pos) {
+        for (int k = 0; k < _right; k += 1) {
+            if (_triggers[k][pos[k + 1]]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Return true iff positions may be packed into a long. */
+    boolean packable() {
+        return _packable;
+    }
+
+    /** Return the number of distinct packed positions. */
+    long states() {
+        checkPackable();
+        return _states;
+    }
+
+    /** Return the positions POS (indexed by slot) packed into a single
+     *  number. */
+    long pack(int[] pos) {
+        checkPackable();
+        long state = 0;
+        for (int k = 1; k <= _right; k += 1) {
+            state += pos[k] * _weights[k];
+        }
+        return state;
+    }
+
+    /** Set POS (indexed by slot) to the positions packed in STATE. */
+    void unpack(long state, int[] pos) {
+        checkPackable();
+        for (int k = 1; k <= _right; k += 1) {
+            pos[k] = (int) (state / _weights[k] % _size);
+        }
+    }
+
+    /** Return the packed positions after one key press from the packed
+     *  positions STATE. */
+    long next(long state) {
+        for (int k = 0; k <= _right; k += 1) {
+            if (k == _right
+                || _triggers[k][(int) (state / _weights[k + 1] % _size)]) {
+                state = advance(state, k);
+                if (k < _right) {
+                    state = advance(state, k + 1);
+                    k += 1;
+                }
+            }
+        }
+        return state;
+    }
+
+    /** Return packed positions STATE with the rotor in slot K advanced,
+     *  if it rotates. */
+    private long advance(long state, int k) {
+        if (!_rotates[k]) {
+            return state;
+        }
+        if (state / _weights[k] % _size == _size - 1) {
+            return state - (_size - 1) * _weights[k];
+        }
+        return state + _weights[k];
+    }
+
+    /** Return the period of the positions reached by key presses from
+     *  the packed positions STATE: the length of the cycle they
+     *  eventually enter.  Uses Brent's cycle finder, so takes time
+     *  proportional to the length of the tail and cycle but no
+     *  storage. */
+    long period(long state) {
+        checkPackable();
+        long power = 1, period = 1;
+        long tortoise = state, hare = next(state);
+        while (tortoise != hare) {
+            if (power == period) {
+                tortoise = hare;
+                power *= 2;
+                period = 0;
+            }
+            hare = next(hare);
+            period += 1;
+        }
+        return period;
+    }
+
+    /** The cycle structure of stepping over every packed position. */
+    static class CycleStructure {
+
+        /** A structure with STATES positions, of which TRANSIENT are on
+         *  no cycle, and with COUNTS[L] cycles of each length L. */
+        CycleStructure(long states, long transients,
+                       SortedMap<Long, Long> counts) {
+            _states = states;
+            _transients = transients;
+            _counts = Collections.unmodifiableSortedMap(counts);
+        }
+
+        /** Return the number of positions. */
+        long states() {
+            return _states;
+        }
+
+        /** Return the number of positions that are on no cycle, and so
+         *  can only be reached by setting the rotors there. */
+        long transients() {
+            return _transients;
+        }
+
+        /** Return the number of cycles of each length, by length. */
+        SortedMap<Long, Long> cycles() {
+            return _counts;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d states, %d transient, cycles %s",
+                                 _states, _transients, _counts);
+        }
+
+        /** Number of positions. */
+        private final long _states;
+
+        /** Number of positions on no cycle. */
+        private final long _transients;
+
+        /** Number of cycles of each length. */
+        private final SortedMap<Long, Long> _counts;
+    }
+
+    /** Return the cycle structure of stepping over all states() packed
+     *  positions, which must be at most MAX_ANALYZED.  Each position is
+     *  visited once. */
+    CycleStructure cycleStructure() {
+        if (states() > MAX_ANALYZED) {
+            throw error("too many rotor positions (%d) to analyze",
+                        states());
+        }
+        int n = (int) states();
+        byte[] mark = new byte[n];
+        int[] path = new int[n];
+        long transients = 0;
+        TreeMap<Long, Long> counts = new TreeMap<>();
+        for (int s = 0; s < n; s += 1) {
+            if (mark[s] != UNSEEN) {
+                continue;
+            }
+            int len = 0, x = s;
+            while (mark[x] == UNSEEN) {
+                mark[x] = ON_PATH;
+                path[len] = x;
+                len += 1;
+                x = (int) next(x);
+            }
+            if (mark[x] == ON_PATH) {
+                int start = len - 1;
+                while (path[start] != x) {
+                    start -= 1;
+                }
+                counts.merge((long) (len - start), 1L, Long::sum);
+                transients += start;
+            } else {
+                transients += len;
+            }
+            for (int i = 0; i < len; i += 1) {
+                mark[path[i]] = DONE;
+            }
+        }
+        return new CycleStructure(n, transients, counts);
+    }
+
+    /** Raise an error if positions cannot be packed. */
+    private void checkPackable() {
+        if (!_packable) {
+            throw error("too many rotor positions to pack");
+        }
+    }
+
+    /** Largest number of positions cycleStructure will analyze. */
+    static final long MAX_ANALYZED = 1 << 26;
+
+    /** Marks of positions during cycleStructure: not yet visited, on
+     *  the current path, and finished. */
+    private static final byte UNSEEN = 0, ON_PATH = 1, DONE = 2;
+
+    /** Size of the alphabet. */
+    private final int _size;
+
+    /** Index of the rightmost slot. */
+    private final int _right;
+
+    /** Whether the rotor in each slot rotates. */
+    private final boolean[] _rotates;
+
+    /** _triggers[K][P] is true iff the rotor in slot K moves when its
+     *  right neighbor is in position P. */
+    private final boolean[][] _triggers;
+
+    /** True iff positions may be packed into a long. */
+    private final boolean _packable;
+
+    /** Number of packed positions, or -1. */
+    private final long _states;
+
+    /** Value of one step of the rotor in each slot in packed positions
+     *  (0 for the reflector's slot). */
+    private final long[] _weights;
+
+}
@@ -0,0 +1,65 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the Stepping class.
+ *  @author
+ */
+public class SteppingTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    @Test
+    public void testNextMatchesStep() {
+        Machine M = MachineTest.navalMachine(
+            new String[] { "B", "Beta", "VI", "VII", "VIII" }, "AAAA", "");
+        Stepping stepping = M.stepping();
+        assertEquals(26 * 26 * 26 * 26, stepping.states());
+        int[] pos = new int[5];
+        for (long s = 0; s < stepping.states(); s += 7) {
+            stepping.unpack(s, pos);
+            assertEquals(s, stepping.pack(pos));
+            stepping.step(pos);
+            assertEquals(stepping.pack(pos), stepping.next(s));
+        }
+    }
+
+    @Test
+    public void testStepMatchesMachine() {
+        Machine M = MachineTest.navalMachine(MachineTest.ROTORS, "AADU", "");
+        Stepping stepping = M.stepping();
+        int[] pos = { 0, 0, 0, 'D' - 'A', 'U' - 'A' };
+        MachineState state = M.definition().newState("AADU");
+        for (int i = 0; i < 20000; i += 1) {
+            stepping.step(pos);
+            M.definition().convert(state, 0);
+            for (int k = 1; k < pos.length; k += 1) {
+                assertEquals(state.position(k), pos[k]);
+            }
+        }
+    }
+
+    @Test
+    public void testPeriod() {
+        Machine M = MachineTest.navalMachine(MachineTest.ROTORS, "AAAA", "");
+        assertEquals(26 * 25 * 26, M.period());
+        M.setRotors("AADU");
+        assertEquals(26 * 25 * 26, M.period());
+    }
+
+    @Test
+    public void testCycleStructure() {
+        Machine M = MachineTest.navalMachine(MachineTest.ROTORS, "AAAA", "");
+        Stepping.CycleStructure cycles = M.stepping().cycleStructure();
+        assertEquals(26 * 26 * 26 * 26, cycles.states());
+        assertEquals(1, cycles.cycles().size());
+        assertEquals(Long.valueOf(26), cycles.cycles().get(26L * 25 * 26));
+        assertEquals(26 * 26 * 26, cycles.transients());
+    }
+
+}
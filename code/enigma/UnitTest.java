@@ -10,8 +10,21 @@ public class UnitTest {
     /** Run the JUnit tests in this package. Add xxxTest.class entries to
      *  the arguments of runClasses to run other JUnit tests. */
     public static void main(String[] ignored) {
-        System.exit(textui.runClasses(PermutationTest.class,
-                                      MovingRotorTest.class));
+        System.exit(textui.runClasses(AlphabetTest.class,
+                                      PermutationTest.class,
+                                      MovingRotorTest.class,
+                                      MachineTest.class,
+                                      KeySearchTest.class,
+                                      BombeTest.class,
+                                      PlugboardSolverTest.class,
+                                      MachineDefinitionTest.class,
+                                      CompiledConfigTest.class,
+                                      EnigmaServerTest.class,
+                                      MetricsTest.class,
+                                      GroupedWriterTest.class,
+                                      LaneEngineTest.class,
+                                      SteppingTest.class,
+                                      RotorRegistryTest.class));
     }
 
 }
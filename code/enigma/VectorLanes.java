@@ -0,0 +1,111 @@
+package enigma;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/** The rotor conversions of a LaneEngine done a vector of lanes at a
+ *  time with the jdk.incubator.vector API.  Each rotor slot's positions
+ *  for a vector of consecutive lanes are loaded as one vector from the
+ *  engine's structure of arrays; the flat index of each lane's entry in
+ *  the rotor table is computed with vector arithmetic, and the entries
+ *  are fetched with one gather per slot.  Results are scattered into
+ *  the lanes' runs of the output.
+ *
+ *  This class is loaded only when the module jdk.incubator.vector is in
+ *  the boot layer (java --add-modules jdk.incubator.vector); otherwise
+ *  LaneEngine uses its scalar loop.
+ *  @author Krish Rambhiya
+ */
+final class VectorLanes {
+
+    /** Conversions for LANES lanes of an engine over an alphabet of SIZE
+     *  characters whose rightmost slot is RIGHT, with positions
+     *  POSITIONS, rotor tables FORWARD and BACKWARD and inverse plugboard
+     *  UNPLUG, all laid out as in LaneEngine and shared with it. */
+    VectorLanes(int lanes, int size, int right, int[] positions,
+                int[] forward, int[] backward, int[] unplug) {
+        _lanes = lanes;
+        _size = size;
+        _right = right;
+        _positions = positions;
+        _forward = forward;
+        _backward = backward;
+        _unplug = unplug;
+        _limit = lanes - lanes % SPECIES.length();
+        _index = new int[SPECIES.length()];
+        _outIndex = new int[lanes];
+        _length = -1;
+    }
+
+    /** Return the number of leading lanes that I convert; the rest are
+     *  too few to fill a vector. */
+    int limit() {
+        return _limit;
+    }
+
+    /** Store the conversion of PLUGGED, an index already through the
+     *  plugboard, by each of the first limit() lanes at its current
+     *  positions in OUT[L * LEN + I] for lane L.  The positions must
+     *  already have been stepped.  Allocates nothing. */
+    void convert(int plugged, int[] out, int len, int i) {
+        if (len != _length) {
+            for (int lane = 0; lane < _lanes; lane += 1) {
+                _outIndex[lane] = lane * len;
+            }
+            _length = len;
+        }
+        int size = _size, square = size * size;
+        for (int g = 0; g < _limit; g += SPECIES.length()) {
+            IntVector c = IntVector.broadcast(SPECIES, plugged);
+            for (int k = _right; k >= 0; k -= 1) {
+                c = gather(_forward, k * square, k * _lanes + g, c);
+            }
+            for (int k = 1; k <= _right; k += 1) {
+                c = gather(_backward, k * square, k * _lanes + g, c);
+            }
+            c.intoArray(_index, 0);
+            c = IntVector.fromArray(SPECIES, _unplug, 0, _index, 0);
+            c.intoArray(out, i, _outIndex, g);
+        }
+    }
+
+    /** Return, for each lane of the vector whose positions in one slot
+     *  start at _positions[AT], the entry of TABLE at BASE plus the
+     *  lane's position times _size plus its element of C. */
+    private IntVector gather(int[] table, int base, int at, IntVector c) {
+        IntVector.fromArray(SPECIES, _positions, at)
+            .mul(_size).add(c).intoArray(_index, 0);
+        return IntVector.fromArray(SPECIES, table, base, _index, 0);
+    }
+
+    /** Shape of the vectors used. */
+    private static final VectorSpecies<Integer> SPECIES =
+        IntVector.SPECIES_PREFERRED;
+
+    /** Number of lanes. */
+    private final int _lanes;
+
+    /** Size of the alphabet. */
+    private final int _size;
+
+    /** Index of the rightmost rotor slot. */
+    private final int _right;
+
+    /** Number of lanes converted here, a multiple of the vector
+     *  length. */
+    private final int _limit;
+
+    /** Positions, rotor tables and inverse plugboard of the engine. */
+    private final int[] _positions, _forward, _backward, _unplug;
+
+    /** Indices of the current gather. */
+    private final int[] _index;
+
+    /** Offset of each lane's run in the output, for outputs of
+     *  _length characters per lane. */
+    private final int[] _outIndex;
+
+    /** Lane length _outIndex was computed for, or -1. */
+    private int _length;
+
+}